@@ -0,0 +1,162 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer.benchmark;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.AvailabilityFilteringRule;
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.DynamicServerListLoadBalancer;
+import com.netflix.loadbalancer.ILoadBalancer;
+import com.netflix.loadbalancer.LoadBalancerBuilder;
+import com.netflix.loadbalancer.RoundRobinRule;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerList;
+import com.netflix.loadbalancer.ServerListUpdater;
+import com.netflix.loadbalancer.ZoneAwareLoadBalancer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ILoadBalancer#chooseServer(Object)} end to end for {@link BaseLoadBalancer} and
+ * {@link ZoneAwareLoadBalancer}, the latter with servers spread over three zones so that the zone
+ * avoidance logic runs on every pick.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBalancerBenchmark {
+
+    @Param({"BaseLoadBalancer", "ZoneAwareLoadBalancer"})
+    String loadBalancer;
+
+    @Param({"10", "100", "5000"})
+    int serverCount;
+
+    private BaseLoadBalancer lb;
+
+    @Setup
+    public void setup() {
+        IClientConfig config = LoadBalancerFixtures.createClientConfig("LoadBalancerBenchmark-" + loadBalancer + "-" + serverCount);
+        final List<Server> servers = LoadBalancerFixtures.createServers(serverCount);
+        if ("ZoneAwareLoadBalancer".equals(loadBalancer)) {
+            DynamicServerListLoadBalancer<Server> zoneAware = LoadBalancerBuilder.<Server>newBuilder()
+                    .withClientConfig(config)
+                    .withRule(new AvailabilityFilteringRule())
+                    .withDynamicServerList(new StaticServerList(servers))
+                    .withServerListUpdater(new NoOpServerListUpdater())
+                    .buildDynamicServerListLoadBalancerWithUpdater();
+            lb = zoneAware;
+        } else {
+            lb = LoadBalancerBuilder.newBuilder()
+                    .withClientConfig(config)
+                    .withRule(new RoundRobinRule())
+                    .buildFixedServerListLoadBalancer(servers);
+        }
+        LoadBalancerFixtures.recordTraffic(lb.getLoadBalancerStats(), servers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        lb.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Server chooseServer_1thread() {
+        return lb.chooseServer(null);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Server chooseServer_8threads() {
+        return lb.chooseServer(null);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Server chooseServer_64threads() {
+        return lb.chooseServer(null);
+    }
+
+    private static class StaticServerList implements ServerList<Server> {
+
+        private final List<Server> servers;
+
+        StaticServerList(List<Server> servers) {
+            this.servers = servers;
+        }
+
+        @Override
+        public List<Server> getInitialListOfServers() {
+            return servers;
+        }
+
+        @Override
+        public List<Server> getUpdatedListOfServers() {
+            return servers;
+        }
+    }
+
+    private static class NoOpServerListUpdater implements ServerListUpdater {
+
+        @Override
+        public void start(UpdateAction updateAction) {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public String getLastUpdate() {
+            return null;
+        }
+
+        @Override
+        public long getDurationSinceLastUpdateMs() {
+            return 0;
+        }
+
+        @Override
+        public int getNumberMissedCycles() {
+            return 0;
+        }
+
+        @Override
+        public int getCoreThreads() {
+            return 0;
+        }
+    }
+}
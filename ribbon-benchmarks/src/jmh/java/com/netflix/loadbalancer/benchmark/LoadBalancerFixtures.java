@@ -0,0 +1,99 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer.benchmark;
+
+import com.netflix.client.ClientFactory;
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.IRule;
+import com.netflix.loadbalancer.LoadBalancerStats;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.ServerStats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Shared setup for the load balancer benchmarks: server lists spread over a fixed set of zones and
+ * pre-recorded traffic so that the statistics driven rules have something to work with.
+ */
+final class LoadBalancerFixtures {
+
+    static final String[] ZONES = {"us-east-1a", "us-east-1b", "us-east-1c"};
+
+    private LoadBalancerFixtures() {
+    }
+
+    static IClientConfig createClientConfig(String name) {
+        return IClientConfig.Builder.newBuilder(name).build();
+    }
+
+    static IRule createRule(String ruleName, IClientConfig config) {
+        try {
+            return (IRule) ClientFactory.instantiateInstanceWithClientConfig("com.netflix.loadbalancer." + ruleName, config);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unable to create rule " + ruleName, e);
+        }
+    }
+
+    static List<Server> createServers(int count) {
+        List<Server> servers = new ArrayList<Server>(count);
+        for (int i = 0; i < count; i++) {
+            Server server = new Server("10.0." + (i / 250) + "." + (i % 250), 7001);
+            server.setZone(ZONES[i % ZONES.length]);
+            server.setAlive(true);
+            servers.add(server);
+        }
+        return servers;
+    }
+
+    static Map<String, List<Server>> groupByZone(List<Server> servers) {
+        Map<String, List<Server>> zones = new HashMap<String, List<Server>>();
+        for (Server server : servers) {
+            List<Server> list = zones.get(server.getZone());
+            if (list == null) {
+                list = new ArrayList<Server>();
+                zones.put(server.getZone(), list);
+            }
+            list.add(server);
+        }
+        return zones;
+    }
+
+    /**
+     * Record a deterministic amount of response times and in-flight requests for every server so
+     * that weights, circuit breaker checks and active request counts are all exercised.
+     */
+    static void recordTraffic(LoadBalancerStats stats, List<Server> servers) {
+        Random random = new Random(42);
+        for (Server server : servers) {
+            ServerStats serverStats = stats.getSingleServerStat(server);
+            double mean = 20 + random.nextInt(80);
+            for (int i = 0; i < 20; i++) {
+                serverStats.noteResponseTime(Math.max(1, mean + random.nextGaussian() * 5));
+                serverStats.incrementNumRequests();
+            }
+            int active = random.nextInt(4);
+            for (int i = 0; i < active; i++) {
+                serverStats.incrementActiveRequestsCount();
+            }
+        }
+    }
+}
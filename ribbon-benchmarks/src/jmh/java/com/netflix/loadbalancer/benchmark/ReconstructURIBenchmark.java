@@ -0,0 +1,110 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer.benchmark;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.LoadBalancerContext;
+import com.netflix.loadbalancer.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LoadBalancerContext#reconstructURIWithServer(Server, URI)} with and without the
+ * reconstructed URI cache, for clients that request a few distinct URIs and for clients whose paths
+ * differ per request (e.g. an id in the path), where the cache mostly misses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReconstructURIBenchmark {
+
+    @Param({"0", "1000"})
+    int cacheSize;
+
+    @Param({"10", "65536"})
+    int distinctPaths;
+
+    private static final int SERVER_COUNT = 10;
+
+    // number of URIs requested in turn, a power of two that is at least the largest distinctPaths
+    private static final int URI_COUNT = 1 << 16;
+
+    private LoadBalancerContext context;
+
+    private Server[] servers;
+
+    private URI[] uris;
+
+    @Setup
+    public void setup() {
+        IClientConfig config = LoadBalancerFixtures.createClientConfig("ReconstructURIBenchmark-" + cacheSize + "-" + distinctPaths);
+        config.set(LoadBalancerContext.RECONSTRUCTED_URI_CACHE_SIZE, cacheSize);
+        context = new LoadBalancerContext(null, config);
+        List<Server> serverList = LoadBalancerFixtures.createServers(SERVER_COUNT);
+        servers = serverList.toArray(new Server[SERVER_COUNT]);
+        uris = new URI[URI_COUNT];
+        for (int i = 0; i < URI_COUNT; i++) {
+            uris[i] = URI.create("/api/v1/items/" + (i % distinctPaths) + "?fields=name,price");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    private URI reconstruct(Cursor cursor) {
+        int i = cursor.next++ & (URI_COUNT - 1);
+        return context.reconstructURIWithServer(servers[i % SERVER_COUNT], uris[i]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public URI reconstructURIWithServer_1thread(Cursor cursor) {
+        return reconstruct(cursor);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public URI reconstructURIWithServer_8threads(Cursor cursor) {
+        return reconstruct(cursor);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public URI reconstructURIWithServer_64threads(Cursor cursor) {
+        return reconstruct(cursor);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer.benchmark;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.IRule;
+import com.netflix.loadbalancer.LoadBalancerBuilder;
+import com.netflix.loadbalancer.Server;
+import com.netflix.loadbalancer.WeightedResponseTimeRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link IRule#choose(Object)} of every built-in rule against a fixed server list held by a
+ * {@link BaseLoadBalancer}. Run with the gc profiler ({@code -prof gc}) to get allocation per pick.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleBenchmark {
+
+    @Param({"RoundRobinRule", "WeightedResponseTimeRule", "AvailabilityFilteringRule", "ZoneAvoidanceRule",
+            "BestAvailableRule", "RandomRule", "RetryRule", "PowerOfTwoChoicesRule", "PeakEwmaRule"})
+    String rule;
+
+    @Param({"10", "100", "5000"})
+    int serverCount;
+
+    private IRule instance;
+
+    private BaseLoadBalancer lb;
+
+    @Setup
+    public void setup() {
+        IClientConfig config = LoadBalancerFixtures.createClientConfig("RuleBenchmark-" + rule + "-" + serverCount);
+        List<Server> servers = LoadBalancerFixtures.createServers(serverCount);
+        instance = LoadBalancerFixtures.createRule(rule, config);
+        lb = LoadBalancerBuilder.newBuilder()
+                .withClientConfig(config)
+                .withRule(instance)
+                .buildFixedServerListLoadBalancer(servers);
+        lb.getLoadBalancerStats().updateZoneServerMapping(LoadBalancerFixtures.groupByZone(servers));
+        LoadBalancerFixtures.recordTraffic(lb.getLoadBalancerStats(), servers);
+        if (instance instanceof WeightedResponseTimeRule) {
+            // recompute the weights now that there are response times to work with
+            instance.setLoadBalancer(lb);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (instance instanceof WeightedResponseTimeRule) {
+            ((WeightedResponseTimeRule) instance).shutdown();
+        }
+        lb.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Server choose_1thread() {
+        return instance.choose(null);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Server choose_8threads() {
+        return instance.choose(null);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Server choose_64threads() {
+        return instance.choose(null);
+    }
+}
@@ -18,7 +18,9 @@
 package com.netflix.niws.loadbalancer;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import com.netflix.appinfo.InstanceInfo;
@@ -63,6 +65,9 @@ public class DiscoveryEnabledNIWSServerList extends AbstractServerList<Discovery
 
     private final Provider<EurekaClient> eurekaClientProvider;
 
+    // servers of the last refresh by instance id, reused while their instance is not modified
+    private volatile Map<String, CachedServer> serverCache = new HashMap<String, CachedServer>();
+
     /**
      * @deprecated use {@link #DiscoveryEnabledNIWSServerList(String)}
      * or {@link #DiscoveryEnabledNIWSServerList(IClientConfig)}
@@ -109,6 +114,7 @@ public class DiscoveryEnabledNIWSServerList extends AbstractServerList<Discovery
                 ConfigurationManager.getConfigInstance().getBoolean("DiscoveryEnabledNIWSServerList.failFastOnNullVip", true)) {
             throw new NullPointerException("VIP address for client " + clientName + " is null");
         }
+        serverCache = new HashMap<String, CachedServer>();
         isSecure = clientConfig.get(CommonClientConfigKey.IsSecure, false);
         prioritizeVipAddressBasedServers = clientConfig.get(CommonClientConfigKey.PrioritizeVipAddressBasedServers, prioritizeVipAddressBasedServers);
         datacenter = ConfigurationManager.getDeploymentContext().getDeploymentDatacenter();
@@ -157,12 +163,22 @@ public class DiscoveryEnabledNIWSServerList extends AbstractServerList<Discovery
         }
 
         EurekaClient eurekaClient = eurekaClientProvider.get();
+        Map<String, CachedServer> previousCache = serverCache;
+        Map<String, CachedServer> currentCache = new HashMap<String, CachedServer>();
         if (vipAddresses!=null){
             for (String vipAddress : vipAddresses.split(",")) {
                 // if targetRegion is null, it will be interpreted as the same region of client
                 List<InstanceInfo> listOfInstanceInfo = eurekaClient.getInstancesByVipAddress(vipAddress, isSecure, targetRegion);
                 for (InstanceInfo ii : listOfInstanceInfo) {
                     if (ii.getStatus().equals(InstanceStatus.UP)) {
+                        String id = ii.getId();
+                        CachedServer cached = id != null ? previousCache.get(id) : null;
+                        if (cached != null && cached.isFor(ii)) {
+                            currentCache.put(id, cached);
+                            serverList.add(cached.server);
+                            continue;
+                        }
+                        Long lastDirtyTimestamp = ii.getLastDirtyTimestamp();
 
                         if(shouldUseOverridePort){
                             if(logger.isDebugEnabled()){
@@ -182,6 +198,9 @@ public class DiscoveryEnabledNIWSServerList extends AbstractServerList<Discovery
                         }
 
                         DiscoveryEnabledServer des = createServer(ii, isSecure, shouldUseIpAddr);
+                        if (id != null) {
+                            currentCache.put(id, new CachedServer(lastDirtyTimestamp, des));
+                        }
                         serverList.add(des);
                     }
                 }
@@ -190,6 +209,7 @@ public class DiscoveryEnabledNIWSServerList extends AbstractServerList<Discovery
                 }
             }
         }
+        serverCache = currentCache;
         return serverList;
     }
 
@@ -205,6 +225,24 @@ public class DiscoveryEnabledNIWSServerList extends AbstractServerList<Discovery
         return server;
     }
 
+    /**
+     * A server created for an instance, valid until the instance is modified, which updates its
+     * last dirty timestamp.
+     */
+    private static class CachedServer {
+        final Long lastDirtyTimestamp;
+        final DiscoveryEnabledServer server;
+
+        CachedServer(Long lastDirtyTimestamp, DiscoveryEnabledServer server) {
+            this.lastDirtyTimestamp = lastDirtyTimestamp;
+            this.server = server;
+        }
+
+        boolean isFor(InstanceInfo instanceInfo) {
+            return lastDirtyTimestamp != null && lastDirtyTimestamp.equals(instanceInfo.getLastDirtyTimestamp());
+        }
+    }
+
     public String getVipAddresses() {
         return vipAddresses;
     }
@@ -1,6 +1,11 @@
 package com.netflix.niws.loadbalancer;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
+import com.netflix.client.config.Property;
 import com.netflix.config.DynamicIntProperty;
 import com.netflix.discovery.CacheRefreshedEvent;
 import com.netflix.discovery.EurekaClient;
@@ -12,8 +17,13 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Provider;
 import java.util.Date;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -26,12 +36,26 @@ import java.util.concurrent.atomic.AtomicLong;
  * Note that when a cache refreshed notification is received, the actual update on the serverList is
  * done on a separate scheduler as the notification is delivered on an eurekaClient thread.
  *
+ * At most one update is pending at a time, notifications received meanwhile being covered by it. As
+ * all the clients of an eurekaClient are notified at once, an update can be held back until a minimum
+ * interval has passed since the last one and delayed by a random jitter, to spread the updates over
+ * time. It can also be skipped when none of the instances of the vip addresses of the client changed.
+ *
  * @author David Liu
  */
 public class EurekaNotificationServerListUpdater implements ServerListUpdater {
 
     private static final Logger logger = LoggerFactory.getLogger(EurekaNotificationServerListUpdater.class);
 
+    public static final IClientConfigKey<Integer> MIN_REFRESH_INTERVAL_MS = new CommonClientConfigKey<Integer>(
+            "EurekaNotificationServerListUpdater.minRefreshIntervalMs", 0) {};
+
+    public static final IClientConfigKey<Integer> REFRESH_JITTER_MS = new CommonClientConfigKey<Integer>(
+            "EurekaNotificationServerListUpdater.refreshJitterMs", 0) {};
+
+    public static final IClientConfigKey<Boolean> REFRESH_ONLY_IF_VIPS_CHANGED = new CommonClientConfigKey<Boolean>(
+            "EurekaNotificationServerListUpdater.refreshOnlyIfVipsChanged", false) {};
+
     private static class LazyHolder {
         private final static String CORE_THREAD = "EurekaNotificationServerListUpdater.ThreadPoolSize";
         private final static String QUEUE_SIZE = "EurekaNotificationServerListUpdater.queueSize";
@@ -90,6 +114,20 @@ public class EurekaNotificationServerListUpdater implements ServerListUpdater {
         }        
     }
 
+    private static class DelayHolder {
+        // only hands delayed updates over to the refresh executors
+        private final static ScheduledExecutorService DELAY_EXECUTOR = createDelayExecutor();
+
+        private static ScheduledExecutorService createDelayExecutor() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                    .setNameFormat("EurekaNotificationServerListUpdater-delay-%d")
+                    .setDaemon(true)
+                    .build());
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
+
     public static ExecutorService getDefaultRefreshExecutor() {
         return LazyHolder.SINGLETON.defaultServerListUpdateExecutor;
     }
@@ -99,14 +137,25 @@ public class EurekaNotificationServerListUpdater implements ServerListUpdater {
     private final AtomicLong lastUpdated = new AtomicLong(System.currentTimeMillis());
     private final Provider<EurekaClient> eurekaClientProvider;
     private final ExecutorService refreshExecutor;
+    private final Property<Integer> minRefreshIntervalMs;
+    private final Property<Integer> refreshJitterMs;
+    private final Property<Boolean> refreshOnlyIfVipsChanged;
+    private final String vipAddresses;
+    private final boolean isSecure;
+    private final String targetRegion;
 
     private volatile EurekaEventListener updateListener;
     private volatile EurekaClient eurekaClient;
+    private volatile Long lastVipsFingerprint;
 
     public EurekaNotificationServerListUpdater() {
         this(new LegacyEurekaClientProvider());
     }
 
+    public EurekaNotificationServerListUpdater(IClientConfig clientConfig) {
+        this(clientConfig, new LegacyEurekaClientProvider(), getDefaultRefreshExecutor());
+    }
+
     public EurekaNotificationServerListUpdater(final Provider<EurekaClient> eurekaClientProvider) {
         this(eurekaClientProvider, getDefaultRefreshExecutor());
     }
@@ -114,6 +163,24 @@ public class EurekaNotificationServerListUpdater implements ServerListUpdater {
     public EurekaNotificationServerListUpdater(final Provider<EurekaClient> eurekaClientProvider, ExecutorService refreshExecutor) {
         this.eurekaClientProvider = eurekaClientProvider;
         this.refreshExecutor = refreshExecutor;
+        this.minRefreshIntervalMs = Property.of(MIN_REFRESH_INTERVAL_MS.defaultValue());
+        this.refreshJitterMs = Property.of(REFRESH_JITTER_MS.defaultValue());
+        this.refreshOnlyIfVipsChanged = Property.of(REFRESH_ONLY_IF_VIPS_CHANGED.defaultValue());
+        this.vipAddresses = null;
+        this.isSecure = false;
+        this.targetRegion = null;
+    }
+
+    public EurekaNotificationServerListUpdater(IClientConfig clientConfig, final Provider<EurekaClient> eurekaClientProvider,
+                                               ExecutorService refreshExecutor) {
+        this.eurekaClientProvider = eurekaClientProvider;
+        this.refreshExecutor = refreshExecutor;
+        this.minRefreshIntervalMs = clientConfig.getDynamicProperty(MIN_REFRESH_INTERVAL_MS);
+        this.refreshJitterMs = clientConfig.getDynamicProperty(REFRESH_JITTER_MS);
+        this.refreshOnlyIfVipsChanged = clientConfig.getDynamicProperty(REFRESH_ONLY_IF_VIPS_CHANGED);
+        this.vipAddresses = clientConfig.resolveDeploymentContextbasedVipAddresses();
+        this.isSecure = clientConfig.get(CommonClientConfigKey.IsSecure, false);
+        this.targetRegion = clientConfig.get(CommonClientConfigKey.TargetRegion);
     }
 
     @Override
@@ -129,23 +196,33 @@ public class EurekaNotificationServerListUpdater implements ServerListUpdater {
                         }
 
                         if (!refreshExecutor.isShutdown()) {
-                            try {
-                                refreshExecutor.submit(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        try {
-                                            updateAction.doUpdate();
-                                            lastUpdated.set(System.currentTimeMillis());
-                                        } catch (Exception e) {
-                                            logger.warn("Failed to update serverList", e);
-                                        } finally {
-                                            updateQueued.set(false);
-                                        }
+                            final Runnable updateTask = new Runnable() {
+                                @Override
+                                public void run() {
+                                    try {
+                                        update(updateAction);
+                                    } catch (Exception e) {
+                                        logger.warn("Failed to update serverList", e);
+                                    } finally {
+                                        updateQueued.set(false);
                                     }
-                                });  // fire and forget
-                            } catch (Exception e) {
-                                logger.warn("Error submitting update task to executor, skipping one round of updates", e);
-                                updateQueued.set(false);  // if submit fails, need to reset updateQueued to false
+                                }
+                            };
+                            long delayMs = getUpdateDelayMs();
+                            if (delayMs > 0) {
+                                try {
+                                    DelayHolder.DELAY_EXECUTOR.schedule(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            submit(updateTask);
+                                        }
+                                    }, delayMs, TimeUnit.MILLISECONDS);
+                                } catch (Exception e) {
+                                    logger.warn("Error scheduling update task, skipping one round of updates", e);
+                                    updateQueued.set(false);
+                                }
+                            } else {
+                                submit(updateTask);
                             }
                         }
                         else {
@@ -169,6 +246,60 @@ public class EurekaNotificationServerListUpdater implements ServerListUpdater {
         }
     }
 
+    private void submit(Runnable updateTask) {
+        try {
+            refreshExecutor.submit(updateTask);  // fire and forget
+        } catch (Exception e) {
+            logger.warn("Error submitting update task to executor, skipping one round of updates", e);
+            updateQueued.set(false);  // if submit fails, need to reset updateQueued to false
+        }
+    }
+
+    private void update(UpdateAction updateAction) {
+        Long fingerprint = null;
+        if (refreshOnlyIfVipsChanged.getOrDefault() && vipAddresses != null && eurekaClient != null) {
+            fingerprint = getVipsFingerprint();
+            if (fingerprint.equals(lastVipsFingerprint)) {
+                logger.debug("instances of {} did not change, skipping the update", vipAddresses);
+                lastUpdated.set(System.currentTimeMillis());
+                return;
+            }
+        }
+        updateAction.doUpdate();
+        lastVipsFingerprint = fingerprint;
+        lastUpdated.set(System.currentTimeMillis());
+    }
+
+    /**
+     * @return the time to wait before submitting an update, so that it comes at least the minimum
+     * refresh interval after the last one, plus a random jitter
+     */
+    /* visible for testing */ long getUpdateDelayMs() {
+        long delayMs = Math.max(0, lastUpdated.get() + minRefreshIntervalMs.getOrDefault() - System.currentTimeMillis());
+        int jitterMs = refreshJitterMs.getOrDefault();
+        if (jitterMs > 0) {
+            delayMs += ThreadLocalRandom.current().nextInt(jitterMs);
+        }
+        return delayMs;
+    }
+
+    /**
+     * @return a hash of the id, status and last dirty timestamp of the instances of the vip addresses,
+     * regardless of their order
+     */
+    private long getVipsFingerprint() {
+        long fingerprint = 1;
+        for (String vipAddress : vipAddresses.split(",")) {
+            long sum = 0;
+            List<InstanceInfo> instances = eurekaClient.getInstancesByVipAddress(vipAddress, isSecure, targetRegion);
+            for (InstanceInfo instance : instances) {
+                sum += Objects.hash(instance.getId(), instance.getStatus(), instance.getLastDirtyTimestamp());
+            }
+            fingerprint = 31 * (31 * fingerprint + instances.size()) + sum;
+        }
+        return fingerprint;
+    }
+
     @Override
     public synchronized void stop() {
         if (isActive.compareAndSet(true, false)) {
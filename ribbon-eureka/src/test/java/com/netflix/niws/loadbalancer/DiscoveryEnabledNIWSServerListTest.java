@@ -0,0 +1,94 @@
+/*
+*
+* Copyright 2018 Netflix, Inc.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+*/
+package com.netflix.niws.loadbalancer;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Provider;
+
+import org.junit.Test;
+
+import com.netflix.appinfo.DataCenterInfo;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.MyDataCenterInfo;
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.DefaultClientConfigImpl;
+import com.netflix.discovery.DefaultEurekaClientConfig;
+import com.netflix.discovery.EurekaClient;
+
+public class DiscoveryEnabledNIWSServerListTest {
+
+    @Test
+    public void testUnmodifiedInstancesReuseServers() {
+        final AtomicReference<List<InstanceInfo>> instances = new AtomicReference<List<InstanceInfo>>();
+        final EurekaClient eurekaClient = createMock(EurekaClient.class);
+        expect(eurekaClient.getEurekaClientConfig()).andReturn(new DefaultEurekaClientConfig()).anyTimes();
+        expect(eurekaClient.getInstancesByVipAddress(eq("dummy:7001"), eq(false), anyObject(String.class)))
+                .andAnswer(() -> instances.get()).anyTimes();
+        replay(eurekaClient);
+
+        DefaultClientConfigImpl config = DefaultClientConfigImpl.getClientConfigWithDefaultValues("testInstanceCache");
+        config.set(CommonClientConfigKey.DeploymentContextBasedVipAddresses, "dummy:7001");
+        DiscoveryEnabledNIWSServerList serverList = new DiscoveryEnabledNIWSServerList(config, new Provider<EurekaClient>() {
+            @Override
+            public EurekaClient get() {
+                return eurekaClient;
+            }
+        });
+
+        instances.set(Arrays.asList(instance("i-1", "host1", 1L), instance("i-2", "host2", 1L)));
+        List<DiscoveryEnabledServer> first = serverList.getInitialListOfServers();
+        assertEquals(2, first.size());
+
+        instances.set(Arrays.asList(instance("i-1", "host1", 1L), instance("i-2", "host2-new", 2L)));
+        List<DiscoveryEnabledServer> second = serverList.getUpdatedListOfServers();
+        assertSame(first.get(0), second.get(0));
+        assertNotSame(first.get(1), second.get(1));
+        assertEquals("host2-new", second.get(1).getHost());
+
+        instances.set(Arrays.asList(instance("i-2", "host2-new", 2L)));
+        assertSame(second.get(1), serverList.getUpdatedListOfServers().get(0));
+
+        // servers of instances that left are not kept
+        instances.set(Arrays.asList(instance("i-1", "host1", 1L)));
+        assertNotSame(first.get(0), serverList.getUpdatedListOfServers().get(0));
+    }
+
+    private static InstanceInfo instance(String id, String host, long lastDirtyTimestamp) {
+        return InstanceInfo.Builder.newBuilder()
+                .setInstanceId(id)
+                .setAppName("dummy")
+                .setHostName(host)
+                .setIPAddr("1.1.1.1")
+                .setPort(7001)
+                .setLastDirtyTimestamp(lastDirtyTimestamp)
+                .setDataCenterInfo(new MyDataCenterInfo(DataCenterInfo.Name.MyOwn))
+                .build();
+    }
+}
@@ -1,6 +1,11 @@
 package com.netflix.niws.loadbalancer;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.appinfo.DataCenterInfo;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.MyDataCenterInfo;
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.DefaultClientConfigImpl;
 import com.netflix.discovery.CacheRefreshedEvent;
 import com.netflix.discovery.EurekaClient;
 import com.netflix.discovery.EurekaEventListener;
@@ -12,6 +17,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import javax.inject.Provider;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CountDownLatch;
@@ -19,6 +26,8 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author David Liu
@@ -282,6 +291,127 @@ public class EurekaNotificationServerListUpdaterTest {
 
     }
 
+    @Test
+    public void testUpdatesAreSpacedByMinInterval() throws Exception {
+        DefaultClientConfigImpl config = DefaultClientConfigImpl.getClientConfigWithDefaultValues("testMinRefreshInterval");
+        config.set(EurekaNotificationServerListUpdater.MIN_REFRESH_INTERVAL_MS, 500);
+        long start = System.currentTimeMillis();
+        EurekaNotificationServerListUpdater serverListUpdater = new EurekaNotificationServerListUpdater(
+                config,
+                new Provider<EurekaClient>() {
+                    @Override
+                    public EurekaClient get() {
+                        return eurekaClientMock;
+                    }
+                },
+                testExecutor
+        );
+
+        try {
+            Capture<EurekaEventListener> eventListenerCapture = new Capture<EurekaEventListener>();
+            eurekaClientMock.registerEventListener(EasyMock.capture(eventListenerCapture));
+
+            EasyMock.replay(eurekaClientMock);
+
+            final CountDownLatch updateLatch = new CountDownLatch(1);
+            serverListUpdater.start(new ServerListUpdater.UpdateAction() {
+                @Override
+                public void doUpdate() {
+                    updateLatch.countDown();
+                }
+            });
+
+            eventListenerCapture.getValue().onEvent(new CacheRefreshedEvent());
+            eventListenerCapture.getValue().onEvent(new CacheRefreshedEvent());
+            Assert.assertTrue(serverListUpdater.updateQueued.get());
+
+            Assert.assertTrue(updateLatch.await(2, TimeUnit.SECONDS));
+            Assert.assertTrue(System.currentTimeMillis() - start >= 450);
+            // the time of the update is recorded once doUpdate() returns, the update task is then done
+            long deadline = System.currentTimeMillis() + 2000;
+            while (serverListUpdater.updateQueued.get() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertFalse(serverListUpdater.updateQueued.get());
+            Assert.assertTrue(serverListUpdater.getUpdateDelayMs() > 0);
+        } finally {
+            serverListUpdater.stop();
+
+            EasyMock.verify(eurekaClientMock);
+        }
+    }
+
+    @Test
+    public void testSkipUpdateIfVipsNotChanged() throws Exception {
+        final AtomicReference<List<InstanceInfo>> instances = new AtomicReference<List<InstanceInfo>>(
+                Arrays.asList(instance("i-1", 1L), instance("i-2", 1L)));
+        EasyMock.expect(eurekaClientMock.getInstancesByVipAddress("dummy:7001", false, null))
+                .andAnswer(() -> instances.get()).anyTimes();
+
+        DefaultClientConfigImpl config = DefaultClientConfigImpl.getClientConfigWithDefaultValues("testRefreshOnlyIfVipsChanged");
+        config.set(CommonClientConfigKey.DeploymentContextBasedVipAddresses, "dummy:7001");
+        config.set(EurekaNotificationServerListUpdater.REFRESH_ONLY_IF_VIPS_CHANGED, true);
+        EurekaNotificationServerListUpdater serverListUpdater = new EurekaNotificationServerListUpdater(
+                config,
+                new Provider<EurekaClient>() {
+                    @Override
+                    public EurekaClient get() {
+                        return eurekaClientMock;
+                    }
+                },
+                testExecutor
+        );
+
+        try {
+            Capture<EurekaEventListener> eventListenerCapture = new Capture<EurekaEventListener>();
+            eurekaClientMock.registerEventListener(EasyMock.capture(eventListenerCapture));
+
+            EasyMock.replay(eurekaClientMock);
+
+            final AtomicInteger updateCount = new AtomicInteger();
+            serverListUpdater.start(new ServerListUpdater.UpdateAction() {
+                @Override
+                public void doUpdate() {
+                    updateCount.incrementAndGet();
+                }
+            });
+
+            refresh(serverListUpdater, eventListenerCapture.getValue());
+            Assert.assertEquals(1, updateCount.get());
+
+            instances.set(Arrays.asList(instance("i-2", 1L), instance("i-1", 1L)));
+            refresh(serverListUpdater, eventListenerCapture.getValue());
+            Assert.assertEquals(1, updateCount.get());
+
+            instances.set(Arrays.asList(instance("i-1", 1L), instance("i-2", 2L)));
+            refresh(serverListUpdater, eventListenerCapture.getValue());
+            Assert.assertEquals(2, updateCount.get());
+        } finally {
+            serverListUpdater.stop();
+
+            EasyMock.verify(eurekaClientMock);
+        }
+    }
+
+    private static void refresh(EurekaNotificationServerListUpdater serverListUpdater, EurekaEventListener listener)
+            throws InterruptedException {
+        listener.onEvent(new CacheRefreshedEvent());
+        for (int i = 0; i < 20 && serverListUpdater.updateQueued.get(); i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertFalse(serverListUpdater.updateQueued.get());
+    }
+
+    private static InstanceInfo instance(String id, long lastDirtyTimestamp) {
+        return InstanceInfo.Builder.newBuilder()
+                .setInstanceId(id)
+                .setAppName("dummy")
+                .setHostName(id)
+                .setLastDirtyTimestamp(lastDirtyTimestamp)
+                .setDataCenterInfo(new MyDataCenterInfo(DataCenterInfo.Name.MyOwn))
+                .build();
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testFailIfDiscoveryIsNotAvailable() {
         EurekaNotificationServerListUpdater serverListUpdater = new EurekaNotificationServerListUpdater(
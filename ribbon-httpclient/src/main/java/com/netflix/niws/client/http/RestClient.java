@@ -28,11 +28,21 @@ import java.security.KeyStore;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.netflix.client.config.Property;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.UserTokenHandler;
+import org.apache.http.client.params.ClientPNames;
 import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.params.ConnRouteParams;
 import org.apache.http.conn.scheme.Scheme;
@@ -42,6 +52,7 @@ import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.AbstractHttpClient;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.RequestWrapper;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
@@ -49,6 +60,11 @@ import org.apache.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import rx.Observable;
+import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.client.AbstractLoadBalancerAwareClient;
 import com.netflix.client.ClientException;
 import com.netflix.client.ClientFactory;
@@ -72,6 +88,7 @@ import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.WebResource.Builder;
+import com.sun.jersey.api.uri.UriComponent;
 import com.sun.jersey.client.apache4.ApacheHttpClient4;
 import com.sun.jersey.client.apache4.ApacheHttpClient4Handler;
 import com.sun.jersey.client.apache4.config.ApacheHttpClient4Config;
@@ -92,6 +109,13 @@ public class RestClient extends AbstractLoadBalancerAwareClient<HttpRequest, Htt
     private static IClientConfigKey<Integer> CONN_IDLE_EVICT_TIME_MILLIS = new CommonClientConfigKey<Integer>(
             "%s.nfhttpclient.connIdleEvictTimeMilliSeconds") {};
 
+    /**
+     * Number of asynchronous requests that may wait for a thread of the async executor before further
+     * requests are rejected. A value of 0 or less disables queueing.
+     */
+    public static final IClientConfigKey<Integer> AsyncExecutorQueueSize = new CommonClientConfigKey<Integer>(
+            "AsyncExecutorQueueSize", 1000) {};
+
 
     private Client restClient;
     private HttpClient httpClient4;
@@ -112,9 +136,16 @@ public class RestClient extends AbstractLoadBalancerAwareClient<HttpRequest, Htt
     private boolean isClientAuthRequired;
     private boolean ignoreUserToken;
     private ApacheHttpClient4Config config;
+    private volatile ExecutorService asyncExecutor;
 
     boolean bFollowRedirects = CommonClientConfigKey.FollowRedirects.defaultValue();
 
+    /**
+     * Redirect setting of the request being executed on the calling thread. The Jersey handler runs the
+     * request on that thread but does not pass the setting on to HttpClient, see {@link FollowRedirectsInterceptor}.
+     */
+    private static final ThreadLocal<Boolean> requestFollowRedirects = new ThreadLocal<Boolean>();
+
     private static final Logger logger = LoggerFactory.getLogger(RestClient.class);
     
     public RestClient() {
@@ -177,6 +208,9 @@ public class RestClient extends AbstractLoadBalancerAwareClient<HttpRequest, Htt
             // DONT use our NFHttpClient's default Retry Handler since we have
             // retry handling (same server/next server) in RestClient itself
             ((AbstractHttpClient) httpClient4).setHttpRequestRetryHandler(new NFHttpMethodRetryHandler(restClientName, 0, false, 0));
+            // the named NFHttpClient may be shared by several RestClients, install the interceptor once
+            ((AbstractHttpClient) httpClient4).removeRequestInterceptorByClass(FollowRedirectsInterceptor.class);
+            ((AbstractHttpClient) httpClient4).addRequestInterceptor(new FollowRedirectsInterceptor());
         } else {
             logger.warn("Unexpected error: Unable to disable NFHttpClient "
                     + "retry handler, this most likely will not cause an "
@@ -470,6 +504,60 @@ public class RestClient extends AbstractLoadBalancerAwareClient<HttpRequest, Htt
                 task.getHeaders(), task.getQueryParams(), config, task.getEntity());
     }
 
+    /**
+     * Runs the blocking Jersey call on an executor of this client, so that callers of
+     * {@link #executeWithLoadBalancerAsync(com.netflix.client.ClientRequest, IClientConfig)} are not blocked.
+     * The executor has as many threads as the connection pool has connections, so it never runs more requests
+     * than the connection pool can serve; up to {@link #AsyncExecutorQueueSize} others are queued, and requests
+     * beyond that fail with a {@link ClientException} of type {@link ClientException.ErrorType#CLIENT_THROTTLED}.
+     */
+    @Override
+    protected Observable<HttpResponse> executeAsync(HttpRequest request, IClientConfig requestConfig) {
+        final Observable<HttpResponse> execution = super.executeAsync(request, requestConfig);
+        return Observable.create(new Observable.OnSubscribe<HttpResponse>() {
+            @Override
+            public void call(final Subscriber<? super HttpResponse> subscriber) {
+                try {
+                    Future<?> future = getAsyncExecutor().submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            execution.unsafeSubscribe(subscriber);
+                        }
+                    });
+                    subscriber.add(Subscriptions.from(future));
+                } catch (RejectedExecutionException e) {
+                    subscriber.onError(new ClientException(ClientException.ErrorType.CLIENT_THROTTLED,
+                            "Too many pending asynchronous requests for client " + restClientName, e));
+                }
+            }
+        });
+    }
+
+    private ExecutorService getAsyncExecutor() {
+        ExecutorService executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (asyncExecutor == null) {
+                    int poolSize = ncc == null ? CommonClientConfigKey.MaxTotalHttpConnections.defaultValue()
+                            : ncc.getOrDefault(CommonClientConfigKey.MaxTotalHttpConnections);
+                    int queueSize = ncc == null ? AsyncExecutorQueueSize.defaultValue()
+                            : ncc.getOrDefault(AsyncExecutorQueueSize);
+                    BlockingQueue<Runnable> queue = queueSize > 0 ? new LinkedBlockingQueue<Runnable>(queueSize)
+                            : new SynchronousQueue<Runnable>();
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                            queue, new ThreadFactoryBuilder()
+                                    .setNameFormat("RestClient-" + String.valueOf(restClientName).replace("%", "%%") + "-%d")
+                                    .setDaemon(true)
+                                    .build());
+                    pool.allowCoreThreadTimeOut(true);
+                    asyncExecutor = pool;
+                }
+                executor = asyncExecutor;
+            }
+        }
+        return executor;
+    }
+
     @Override
     protected int getDefaultPortFromScheme(String scheme) {
         int port = super.getDefaultPortFromScheme(scheme);
@@ -512,23 +600,17 @@ public class RestClient extends AbstractLoadBalancerAwareClient<HttpRequest, Htt
                 .flatMap(config -> config.getIfSet(CommonClientConfigKey.FollowRedirects))
                 .orElse(bFollowRedirects);
 
-        restClient.setFollowRedirects(bbFollowRedirects);
-
         if (logger.isDebugEnabled()) {
             logger.debug("RestClient sending new Request(" + verb
                     + ": ) " + uri);
         }
 
 
-        WebResource xResource = restClient.resource(uri.toString());
-        if (params != null) {
-            for (Map.Entry<String, Collection<String>> entry: params.entrySet()) {
-                String name = entry.getKey();
-                for (String value: entry.getValue()) {
-                    xResource = xResource.queryParam(name, value);
-                }
-            }
-        }
+        // per request options are set on the resource, which has its own copy of the client properties
+        WebResource xResource = restClient.resource(appendQueryParams(uri, params));
+        Optional.ofNullable(overriddenClientConfig)
+                .flatMap(config -> config.getIfSet(CommonClientConfigKey.ReadTimeout))
+                .ifPresent(readTimeout -> xResource.setProperty(ApacheHttpClient4Config.PROPERTY_READ_TIMEOUT, readTimeout));
         ClientResponse jerseyResponse;
 
         Builder b = xResource.getRequestBuilder();
@@ -542,30 +624,35 @@ public class RestClient extends AbstractLoadBalancerAwareClient<HttpRequest, Htt
             }
         }
         Object entity = requestEntity;
-        
-        switch (verb) {
-        case GET:
-            jerseyResponse = b.get(ClientResponse.class);
-            break;
-        case POST:
-            jerseyResponse = b.post(ClientResponse.class, entity);
-            break;
-        case PUT:
-            jerseyResponse = b.put(ClientResponse.class, entity);
-            break;
-        case DELETE:
-            jerseyResponse = b.delete(ClientResponse.class);
-            break;
-        case HEAD:
-            jerseyResponse = b.head();
-            break;
-        case OPTIONS:
-            jerseyResponse = b.options(ClientResponse.class);
-            break;
-        default:
-            throw new ClientException(
-                    ClientException.ErrorType.GENERAL,
-                    "You have to one of the REST verbs such as GET, POST etc.");
+
+        requestFollowRedirects.set(bbFollowRedirects);
+        try {
+            switch (verb) {
+            case GET:
+                jerseyResponse = b.get(ClientResponse.class);
+                break;
+            case POST:
+                jerseyResponse = b.post(ClientResponse.class, entity);
+                break;
+            case PUT:
+                jerseyResponse = b.put(ClientResponse.class, entity);
+                break;
+            case DELETE:
+                jerseyResponse = b.delete(ClientResponse.class);
+                break;
+            case HEAD:
+                jerseyResponse = b.head();
+                break;
+            case OPTIONS:
+                jerseyResponse = b.options(ClientResponse.class);
+                break;
+            default:
+                throw new ClientException(
+                        ClientException.ErrorType.GENERAL,
+                        "You have to one of the REST verbs such as GET, POST etc.");
+            }
+        } finally {
+            requestFollowRedirects.remove();
         }
 
         thisResponse = new HttpClientResponse(jerseyResponse, uri, overriddenClientConfig);
@@ -576,6 +663,61 @@ public class RestClient extends AbstractLoadBalancerAwareClient<HttpRequest, Htt
         return thisResponse;
     }
 
+    /**
+     * Sets the redirect handling of the request being executed on its own parameters, which HttpClient
+     * consults ahead of the client parameters.
+     */
+    static class FollowRedirectsInterceptor implements HttpRequestInterceptor {
+        @Override
+        public void process(org.apache.http.HttpRequest request, HttpContext context) {
+            Boolean followRedirects = requestFollowRedirects.get();
+            if (followRedirects == null) {
+                return;
+            }
+            // the parameters of the wrapper are a read only stack over those of the original request
+            org.apache.http.HttpRequest original = request instanceof RequestWrapper ? ((RequestWrapper) request).getOriginal() : request;
+            original.getParams().setBooleanParameter(ClientPNames.HANDLE_REDIRECTS, followRedirects);
+        }
+    }
+
+    /**
+     * Appends the query parameters to the URI in one pass, encoding them as
+     * {@link WebResource#queryParam(String, String)} does.
+     */
+    static String appendQueryParams(URI uri, Map<String, Collection<String>> params) {
+        String uriString = uri.toString();
+        if (params == null || params.isEmpty()) {
+            return uriString;
+        }
+        int fragmentStart = uri.getRawFragment() == null ? uriString.length() : uriString.lastIndexOf('#');
+        StringBuilder sb = new StringBuilder(uriString.length() + 16 * params.size());
+        sb.append(uriString, 0, fragmentStart);
+        String rawQuery = uri.getRawQuery();
+        boolean hasQuery = rawQuery != null;
+        boolean emptyQuery = rawQuery == null || rawQuery.isEmpty();
+        for (Map.Entry<String, Collection<String>> entry: params.entrySet()) {
+            if (entry.getKey() == null) {
+                throw new IllegalArgumentException("Name parameter is null");
+            }
+            String name = UriComponent.contextualEncode(entry.getKey(), UriComponent.Type.QUERY_PARAM);
+            for (String value: entry.getValue()) {
+                if (value == null) {
+                    throw new IllegalArgumentException("Value parameter is null");
+                }
+                if (!hasQuery) {
+                    sb.append('?');
+                    hasQuery = true;
+                } else if (!emptyQuery) {
+                    sb.append('&');
+                }
+                emptyQuery = false;
+                sb.append(name).append('=').append(UriComponent.contextualEncode(value, UriComponent.Type.QUERY_PARAM));
+            }
+        }
+        sb.append(uriString, fragmentStart, uriString.length());
+        return sb.toString();
+    }
+
     @Override
     protected boolean isRetriableException(Throwable e) {
         if (e instanceof ClientException
@@ -655,6 +797,9 @@ public class RestClient extends AbstractLoadBalancerAwareClient<HttpRequest, Htt
 	        ((BaseLoadBalancer) lb).shutdown();
 	    }
 	    NFHttpClientFactory.shutdownNFHttpClient(restClientName);
+	    if (asyncExecutor != null) {
+	        asyncExecutor.shutdown();
+	    }
 	}
 }
 
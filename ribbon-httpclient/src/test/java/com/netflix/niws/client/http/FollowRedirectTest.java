@@ -93,5 +93,32 @@ public class FollowRedirectTest {
         assertEquals(200, response.getStatus());      
     }
 
-}
+    @Test
+    public void testRedirectNotFollowedWhenOverriddenPerRequest() throws Exception {
+        IClientConfig config = DefaultClientConfigImpl
+                .getClientConfigWithDefaultValues("myclient3")
+                .set(IClientConfigKey.Keys.FollowRedirects, Boolean.TRUE);
+        ClientFactory.registerClientFromProperties("myclient3", config);
+        RestClient client = (RestClient) ClientFactory.getNamedClient("myclient3");
+        HttpRequest request = HttpRequest.newBuilder().uri(new URI("http://localhost:" + redirectingServer.getPort()))
+                .overrideConfig(DefaultClientConfigImpl.getEmptyConfig().set(IClientConfigKey.Keys.FollowRedirects, Boolean.FALSE))
+                .build();
+        HttpResponse response = client.execute(request);
+        assertEquals(302, response.getStatus());
+    }
 
+    @Test
+    public void testRedirectFollowedWhenOverriddenPerRequest() throws Exception {
+        IClientConfig config = DefaultClientConfigImpl
+                .getClientConfigWithDefaultValues("myclient4")
+                .set(IClientConfigKey.Keys.FollowRedirects, Boolean.FALSE);
+        ClientFactory.registerClientFromProperties("myclient4", config);
+        RestClient client = (RestClient) ClientFactory.getNamedClient("myclient4");
+        HttpRequest request = HttpRequest.newBuilder().uri(new URI("http://localhost:" + redirectingServer.getPort()))
+                .overrideConfig(DefaultClientConfigImpl.getEmptyConfig().set(IClientConfigKey.Keys.FollowRedirects, Boolean.TRUE))
+                .build();
+        HttpResponse response = client.execute(request);
+        assertEquals(200, response.getStatus());
+    }
+
+}
@@ -22,23 +22,34 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.ClassRule;
 import org.junit.Test;
 
+import com.netflix.client.ClientException;
 import com.netflix.client.ClientFactory;
 import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.DefaultClientConfigImpl;
 import com.netflix.client.http.HttpRequest;
 import com.netflix.client.http.HttpResponse;
 import com.netflix.client.testutil.MockHttpServer;
 import com.netflix.config.ConfigurationManager;
 import com.netflix.loadbalancer.BaseLoadBalancer;
 import com.netflix.loadbalancer.Server;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.WebResource;
+
+import rx.observers.TestSubscriber;
 
 
 public class RestClientTest {
@@ -140,4 +151,65 @@ public class RestClientTest {
     private void assertStatusIsOk(int status) {
         assertTrue(status == 200 || status == 302);
     }
+
+    @Test
+    public void testAppendQueryParams() throws Exception {
+        Map<String, Collection<String>> params = new LinkedHashMap<String, Collection<String>>();
+        params.put("name", Arrays.asList("a b", "c&d=e"));
+        params.put("encoded", Arrays.asList("x%20y", "100%"));
+        params.put("empty", Arrays.asList(""));
+        Client jerseyClient = Client.create();
+        for (String uri : Arrays.asList("http://localhost:8080/abc", "http://localhost:8080/abc?x=y",
+                "http://localhost:8080/abc?", "/abc?x=y#top", "http://localhost:8080/a%2Fb#top")) {
+            WebResource resource = jerseyClient.resource(uri);
+            for (Map.Entry<String, Collection<String>> entry : params.entrySet()) {
+                for (String value : entry.getValue()) {
+                    resource = resource.queryParam(entry.getKey(), value);
+                }
+            }
+            assertEquals(resource.getURI().toString(), RestClient.appendQueryParams(new URI(uri), params));
+        }
+        assertEquals("/abc", RestClient.appendQueryParams(new URI("/abc"), null));
+    }
+
+    @Test
+    public void testReadTimeoutOverriddenPerRequest() throws Exception {
+        ConfigurationManager.getConfigInstance().setProperty("readTimeoutOverride.ribbon." + CommonClientConfigKey.ReadTimeout, "10000");
+        RestClient client = (RestClient) ClientFactory.getNamedClient("readTimeoutOverride");
+        HttpRequest request = HttpRequest.newBuilder().uri(server.getServerPath("/ok?delay=1000"))
+                .overrideConfig(DefaultClientConfigImpl.getEmptyConfig().set(CommonClientConfigKey.ReadTimeout, 100))
+                .build();
+        try {
+            client.execute(request);
+            fail("Exception expected");
+        } catch (Exception e) {
+            Throwable cause = e;
+            while (cause != null && !(cause instanceof SocketTimeoutException)) {
+                cause = cause.getCause();
+            }
+            assertTrue("Unexpected exception " + e, cause instanceof SocketTimeoutException);
+        }
+    }
+
+    @Test
+    public void testAsyncRequestsBeyondQueueAreRejected() throws Exception {
+        ConfigurationManager.getConfigInstance().setProperty("asyncQueue.ribbon." + CommonClientConfigKey.MaxTotalHttpConnections, "1");
+        ConfigurationManager.getConfigInstance().setProperty("asyncQueue.ribbon." + RestClient.AsyncExecutorQueueSize, "0");
+        RestClient client = (RestClient) ClientFactory.getNamedClient("asyncQueue");
+        HttpRequest slow = HttpRequest.newBuilder().uri(server.getServerPath("/ok?delay=1000")).build();
+        TestSubscriber<HttpResponse> first = new TestSubscriber<HttpResponse>();
+        client.executeWithLoadBalancerAsync(slow, null).subscribe(first);
+        try {
+            client.executeWithLoadBalancerAsync(slow, DefaultClientConfigImpl.getEmptyConfig().set(CommonClientConfigKey.MaxAutoRetriesNextServer, 0))
+                    .toBlocking()
+                    .single();
+            fail("Exception expected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof ClientException);
+            assertEquals(ClientException.ErrorType.CLIENT_THROTTLED, ((ClientException) e.getCause()).getErrorType());
+        }
+        first.awaitTerminalEvent();
+        first.assertNoErrors();
+        assertStatusIsOk(first.getOnNextEvents().get(0).getStatus());
+    }
 }
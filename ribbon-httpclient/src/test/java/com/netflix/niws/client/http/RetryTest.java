@@ -18,11 +18,13 @@
 package com.netflix.niws.client.http;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.net.URI;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -217,4 +219,37 @@ public class RetryTest {
         ServerStats stats = lb.getLoadBalancerStats().getSingleServerStat(new Server("localhost:12987")); 
         assertEquals(1, stats.getSuccessiveConnectionFailureCount());
     }
+
+    @Test
+    public void testSuccessfulRetriesAsync() throws Exception {
+        lb.setServersList(Lists.newArrayList(new Server("localhost:12987"), new Server("localhost:12987"), localServer));
+        lb.getLoadBalancerStats().getSingleServerStat(new Server("localhost:12987")).clearSuccessiveConnectionFailureCount();
+        URI localUrl = new URI("/ok");
+        HttpRequest request = HttpRequest.newBuilder().uri(localUrl).queryParams("name", "ribbon").build();
+        final String callerThread = Thread.currentThread().getName();
+        final AtomicReference<String> responseThread = new AtomicReference<String>();
+        HttpResponse response = client.executeWithLoadBalancerAsync(request, DefaultClientConfigImpl.getEmptyConfig().set(CommonClientConfigKey.MaxAutoRetriesNextServer, 2))
+                .doOnNext(r -> responseThread.set(Thread.currentThread().getName()))
+                .toBlocking()
+                .single();
+        assertEquals(200, response.getStatus());
+        assertNotEquals(callerThread, responseThread.get());
+        ServerStats stats = lb.getLoadBalancerStats().getSingleServerStat(new Server("localhost:12987")); 
+        assertEquals(1, stats.getSuccessiveConnectionFailureCount());
+    }
+
+    @Test
+    public void testThrottledWithRetryNextServerAsync() throws Exception {
+        URI localUrl = new URI("/status?code=503");
+        HttpRequest request = HttpRequest.newBuilder().uri(localUrl).build();
+        try {
+            client.executeWithLoadBalancerAsync(request, DefaultClientConfigImpl.getEmptyConfig().set(CommonClientConfigKey.MaxAutoRetriesNextServer, 2))
+                    .toBlocking()
+                    .single();
+            fail("Exception expected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof ClientException);
+        }
+        assertEquals(3, lb.getLoadBalancerStats().getSingleServerStat(localServer).getSuccessiveConnectionFailureCount());
+    }
 }
@@ -120,6 +120,47 @@ public abstract class AbstractLoadBalancerAwareClient<S extends ClientRequest, T
         }
         
     }
+
+    public Observable<T> executeWithLoadBalancerAsync(S request) {
+        return executeWithLoadBalancerAsync(request, null);
+    }
+
+    /**
+     * Asynchronous version of {@link #executeWithLoadBalancer(ClientRequest, IClientConfig)}. The request is
+     * dispatched when the returned {@link Observable} is subscribed to, with the same server selection, retries
+     * and statistics, and the response or the error is emitted once the last attempt completes. No thread waits
+     * for the response in between unless {@link #executeAsync(ClientRequest, IClientConfig)} blocks.
+     * <p>
+     * Use <code>toBlocking()</code> or <code>toSingle()</code> on the result to adapt it to other APIs.
+     */
+    public Observable<T> executeWithLoadBalancerAsync(final S request, final IClientConfig requestConfig) {
+        LoadBalancerCommand<T> command = buildLoadBalancerCommand(request, requestConfig);
+        return command.submit(
+            new ServerOperation<T>() {
+                @Override
+                public Observable<T> call(Server server) {
+                    URI finalUri = reconstructURIWithServer(server, request.getUri());
+                    S requestForServer = (S) request.replaceUri(finalUri);
+                    return executeAsync(requestForServer, requestConfig);
+                }
+            });
+    }
+
+    /**
+     * Execute a request to the server in its URI when subscribed to, used by
+     * {@link #executeWithLoadBalancerAsync(ClientRequest, IClientConfig)}. The default implementation calls
+     * {@link #execute(ClientRequest, IClientConfig)} on the subscribing thread; subclasses should override
+     * this to dispatch the request without blocking the caller.
+     */
+    protected Observable<T> executeAsync(final S request, final IClientConfig requestConfig) {
+        return Observable.defer(() -> {
+            try {
+                return Observable.just(execute(request, requestConfig));
+            } catch (Exception e) {
+                return Observable.error(e);
+            }
+        });
+    }
     
     public abstract RequestSpecificRetryHandler getRequestSpecificRetryHandler(S request, IClientConfig requestConfig);
 
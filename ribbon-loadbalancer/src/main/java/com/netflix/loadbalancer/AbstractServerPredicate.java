@@ -19,6 +19,7 @@ package com.netflix.loadbalancer;
 
 import java.util.List;
 import java.util.Random;
+import java.util.RandomAccess;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
@@ -41,6 +42,34 @@ import com.netflix.client.config.IClientConfig;
  */
 public abstract class AbstractServerPredicate implements Predicate<PredicateKey> {
     
+    /**
+     * Whether a class filters servers with the default {@link #getEligibleServers(List)} and
+     * {@link #getEligibleServers(List, Object)}, that is only by applying the predicate, so that servers can
+     * be chosen without building the filtered list.
+     */
+    private static final ClassValue<Boolean> DEFAULT_FILTERING = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return isDefault(type.getMethod("getEligibleServers", List.class).getDeclaringClass())
+                        && isDefault(type.getMethod("getEligibleServers", List.class, Object.class).getDeclaringClass());
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+        private boolean isDefault(Class<?> declaringClass) {
+            return declaringClass == AbstractServerPredicate.class || declaringClass == CompositePredicate.class;
+        }
+    };
+
+    private static final ThreadLocal<FilterBuffer> FILTER_BUFFER = new ThreadLocal<FilterBuffer>() {
+        @Override
+        protected FilterBuffer initialValue() {
+            return new FilterBuffer();
+        }
+    };
+
     protected IRule rule;
     private volatile LoadBalancerStats lbStats;
     
@@ -143,6 +172,72 @@ public abstract class AbstractServerPredicate implements Predicate<PredicateKey>
         }
     }
 
+    /**
+     * Apply the predicate to a server and a load balancer key without allocating a {@link PredicateKey}.
+     */
+    boolean apply(Object loadBalancerKey, Server server) {
+        FilterBuffer buffer = FilterBuffer.acquire();
+        try {
+            return apply(buffer.key.set(loadBalancerKey, server));
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Whether servers can be chosen with {@link #filterIndices(List, Object, FilterBuffer)}.
+     */
+    boolean hasDefaultFiltering() {
+        return DEFAULT_FILTERING.get(getClass());
+    }
+
+    /**
+     * Store the indices of the servers that pass the predicate in the buffer, in the same order as
+     * {@link #getEligibleServers(List, Object)} would return them.
+     *
+     * @return the number of eligible servers
+     */
+    int filterIndices(List<Server> servers, Object loadBalancerKey, FilterBuffer buffer) {
+        int size = servers.size();
+        int[] indices = buffer.indices(size);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (apply(buffer.key.set(loadBalancerKey, servers.get(i)))) {
+                indices[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Choose one of the servers that pass the predicate. Unless {@link #getEligibleServers(List)} or
+     * {@link #getEligibleServers(List, Object)} is overridden, this makes a single pass over the servers and
+     * allocates nothing, which matters for large server lists as it is done for every request.
+     *
+     * @param withKey whether the caller passed a load balancer key, otherwise the servers are filtered with
+     *                {@link #getEligibleServers(List)}
+     * @return the chosen server, or null if no server is eligible
+     */
+    private Server chooseAfterFiltering(List<Server> servers, Object loadBalancerKey, boolean withKey, boolean roundRobin) {
+        if (!(servers instanceof RandomAccess) || !hasDefaultFiltering()) {
+            List<Server> eligible = withKey ? getEligibleServers(servers, loadBalancerKey) : getEligibleServers(servers);
+            if (eligible.size() == 0) {
+                return null;
+            }
+            return eligible.get(roundRobin ? incrementAndGetModulo(eligible.size()) : random.nextInt(eligible.size()));
+        }
+        FilterBuffer buffer = FilterBuffer.acquire();
+        try {
+            int count = filterIndices(servers, loadBalancerKey, buffer);
+            if (count == 0) {
+                return null;
+            }
+            return servers.get(buffer.indices[roundRobin ? incrementAndGetModulo(count) : random.nextInt(count)]);
+        } finally {
+            buffer.release();
+        }
+    }
+
     /**
      * Referenced from RoundRobinRule
      * Inspired by the implementation of {@link AtomicInteger#incrementAndGet()}.
@@ -165,11 +260,7 @@ public abstract class AbstractServerPredicate implements Predicate<PredicateKey>
      *  
      */
     public Optional<Server> chooseRandomlyAfterFiltering(List<Server> servers) {
-        List<Server> eligible = getEligibleServers(servers);
-        if (eligible.size() == 0) {
-            return Optional.absent();
-        }
-        return Optional.of(eligible.get(random.nextInt(eligible.size())));
+        return Optional.fromNullable(chooseAfterFiltering(servers, null, false, false));
     }
     
     /**
@@ -177,11 +268,7 @@ public abstract class AbstractServerPredicate implements Predicate<PredicateKey>
      * is presumed to be null.
      */
     public Optional<Server> chooseRoundRobinAfterFiltering(List<Server> servers) {
-        List<Server> eligible = getEligibleServers(servers);
-        if (eligible.size() == 0) {
-            return Optional.absent();
-        }
-        return Optional.of(eligible.get(incrementAndGetModulo(eligible.size())));
+        return Optional.fromNullable(chooseAfterFiltering(servers, null, false, true));
     }
     
     /**
@@ -190,22 +277,14 @@ public abstract class AbstractServerPredicate implements Predicate<PredicateKey>
      *  
      */
     public Optional<Server> chooseRandomlyAfterFiltering(List<Server> servers, Object loadBalancerKey) {
-        List<Server> eligible = getEligibleServers(servers, loadBalancerKey);
-        if (eligible.size() == 0) {
-            return Optional.absent();
-        }
-        return Optional.of(eligible.get(random.nextInt(eligible.size())));
+        return Optional.fromNullable(chooseAfterFiltering(servers, loadBalancerKey, true, false));
     }
     
     /**
      * Choose a server in a round robin fashion after the predicate filters a given list of servers and load balancer key. 
      */
     public Optional<Server> chooseRoundRobinAfterFiltering(List<Server> servers, Object loadBalancerKey) {
-        List<Server> eligible = getEligibleServers(servers, loadBalancerKey);
-        if (eligible.size() == 0) {
-            return Optional.absent();
-        }
-        return Optional.of(eligible.get(incrementAndGetModulo(eligible.size())));
+        return Optional.fromNullable(chooseAfterFiltering(servers, loadBalancerKey, true, true));
     }
         
     /**
@@ -233,4 +312,40 @@ public abstract class AbstractServerPredicate implements Predicate<PredicateKey>
             }            
         };        
     }
+
+    /**
+     * Per thread buffers used to filter servers without allocating.
+     */
+    static final class FilterBuffer {
+        private static final int INITIAL_CAPACITY = 64;
+
+        final PredicateKey key = new PredicateKey(null);
+        private int[] indices = new int[INITIAL_CAPACITY];
+        private boolean inUse;
+
+        /**
+         * Get the buffer of the current thread, or a new one if a predicate chooses servers itself while
+         * the buffer is in use.
+         */
+        static FilterBuffer acquire() {
+            FilterBuffer buffer = FILTER_BUFFER.get();
+            if (buffer.inUse) {
+                buffer = new FilterBuffer();
+            }
+            buffer.inUse = true;
+            return buffer;
+        }
+
+        void release() {
+            key.set(null, null);
+            inUse = false;
+        }
+
+        int[] indices(int size) {
+            if (indices.length < size) {
+                indices = new int[Math.max(size, indices.length * 2)];
+            }
+            return indices;
+        }
+    }
 }
@@ -83,7 +83,7 @@ public class AvailabilityFilteringRule extends PredicateBasedRule {
         int count = 0;
         Server server = roundRobinRule.choose(key);
         while (count++ <= 10) {
-            if (server != null && predicate.apply(new PredicateKey(server))) {
+            if (server != null && predicate.apply(null, server)) {
                 return server;
             }
             server = roundRobinRule.choose(key);
@@ -89,12 +89,17 @@ public class AvailabilityPredicate extends  AbstractServerPredicate {
         return !shouldSkipServer(stats.getSingleServerStat(input.getServer()));
     }
     
-    private boolean shouldSkipServer(ServerStats stats) {
+    /**
+     * @return true if the server is circuit breaker tripped, has too many active requests or has reached
+     *         its adaptive concurrency limit
+     */
+    boolean shouldSkipServer(ServerStats stats) {
         if ((circuitBreakerFiltering.getOrDefault() && stats.isCircuitBreakerTripped())
                 || stats.getActiveRequestsCount() >= getActiveConnectionsLimit()) {
             return true;
         }
-        return false;
+        ConcurrencyLimit concurrencyLimit = stats.getConcurrencyLimit();
+        return concurrencyLimit != null && concurrencyLimit.isSaturated();
     }
 
 }
@@ -19,7 +19,6 @@ package com.netflix.loadbalancer;
 
 import static java.util.Collections.singleton;
 
-import com.google.common.collect.ImmutableList;
 import com.netflix.client.ClientFactory;
 import com.netflix.client.IClientConfigAware;
 import com.netflix.client.PrimeConnections;
@@ -29,19 +28,24 @@ import com.netflix.servo.annotations.DataSourceType;
 import com.netflix.servo.annotations.Monitor;
 import com.netflix.servo.monitor.Counter;
 import com.netflix.servo.monitor.Monitors;
-import com.netflix.util.concurrent.ShutdownEnabledTimer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -52,6 +56,10 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * servers can be set as the server pool. A ping can be set to determine the
  * liveness of a server. Internally, this class maintains an "all" server list
  * and an "up" server list and use them depending on what the caller asks for.
+ * <p>
+ * Both lists are published together as an immutable {@link ServerListSnapshot}.
+ * Readers never lock; updates (setting the server list, pinging and marking
+ * servers down) are serialized and publish a new snapshot.
  * 
  * @author stonse
  * 
@@ -72,24 +80,48 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
 
     protected IPing ping = null;
 
-    @Monitor(name = PREFIX + "AllServerList", type = DataSourceType.INFORMATIONAL)
-    protected volatile List<Server> allServerList = Collections
-            .synchronizedList(new ArrayList<Server>());
-    @Monitor(name = PREFIX + "UpServerList", type = DataSourceType.INFORMATIONAL)
-    protected volatile List<Server> upServerList = Collections
-            .synchronizedList(new ArrayList<Server>());
+    private volatile ServerListSnapshot serverListSnapshot = ServerListSnapshot.EMPTY;
+
+    /**
+     * @deprecated use {@link #getAllServers()} or {@link #getServerListSnapshot()}. Kept in sync with
+     *             the published snapshot as an unmodifiable list, changes to it are not possible.
+     */
+    @Deprecated
+    protected volatile List<Server> allServerList = Collections.emptyList();
+
+    /**
+     * @deprecated use {@link #getReachableServers()} or {@link #getServerListSnapshot()}. Kept in sync
+     *             with the published snapshot as an unmodifiable list, changes to it are not possible.
+     */
+    @Deprecated
+    protected volatile List<Server> upServerList = Collections.emptyList();
 
+    /**
+     * Serializes updates of {@link #serverListSnapshot}. Readers do not need to lock.
+     */
     protected ReadWriteLock allServerLock = new ReentrantReadWriteLock();
+
+    /**
+     * @deprecated no longer used, the up server list is published as part of the
+     *             {@link ServerListSnapshot}
+     */
+    @Deprecated
     protected ReadWriteLock upServerLock = new ReentrantReadWriteLock();
 
     protected String name = DEFAULT_NAME;
 
+    /**
+     * @deprecated the ping task is scheduled with {@link LoadBalancerScheduler}, this timer is not used
+     */
+    @Deprecated
     protected Timer lbTimer = null;
+    private volatile ScheduledFuture<?> pingFuture;
     protected int pingIntervalSeconds = 10;
     protected int maxTotalPingTimeSeconds = 5;
     protected Comparator<Server> serverComparator = new ServerComparator();
 
     protected AtomicBoolean pingInProgress = new AtomicBoolean(false);
+    private final AtomicBoolean pingQueued = new AtomicBoolean(false);
 
     protected LoadBalancerStats lbStats;
 
@@ -169,6 +201,7 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
     void initWithConfig(IClientConfig clientConfig, IRule rule, IPing ping, LoadBalancerStats stats) {
         this.config = clientConfig;
         this.name = clientConfig.getClientName();
+        LoadBalancerScheduler.configure(clientConfig);
         int pingIntervalTime = clientConfig.get(CommonClientConfigKey.NFLoadBalancerPingInterval, 30);
         int maxTotalPingTime = clientConfig.get(CommonClientConfigKey.NFLoadBalancerMaxTotalPingTime, 2);
 
@@ -212,9 +245,13 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
     public void initWithNiwsConfig(IClientConfig clientConfig, Factory factory) {
         String ruleClassName = clientConfig.getOrDefault(CommonClientConfigKey.NFLoadBalancerRuleClassName);
         String pingClassName = clientConfig.getOrDefault(CommonClientConfigKey.NFLoadBalancerPingClassName);
+        String pingStrategyClassName = clientConfig.get(CommonClientConfigKey.NFLoadBalancerPingStrategyClassName);
         try {
             IRule rule = (IRule)factory.create(ruleClassName, clientConfig);
             IPing ping = (IPing)factory.create(pingClassName, clientConfig);
+            if (pingStrategyClassName != null) {
+                setPingStrategy((IPingStrategy)factory.create(pingStrategyClassName, clientConfig));
+            }
             LoadBalancerStats stats = createLoadBalancerStatsFromConfig(clientConfig, factory);
             initWithConfig(clientConfig, rule, ping, stats);
         } catch (Exception e) {
@@ -267,12 +304,9 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
         if (canSkipPing()) {
             return;
         }
-        if (lbTimer != null) {
-            lbTimer.cancel();
-        }
-        lbTimer = new ShutdownEnabledTimer("NFLoadBalancer-PingTimer-" + name,
-                true);
-        lbTimer.schedule(new PingTask(), 0, pingIntervalSeconds * 1000);
+        cancelPingTask();
+        pingFuture = LoadBalancerScheduler.scheduleWithFixedDelay("NFLoadBalancer-PingTimer-" + name,
+                new PingTask(), 0, pingIntervalSeconds, TimeUnit.SECONDS);
         forceQuickPing();
     }
 
@@ -305,6 +339,11 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
         this.lbStats = lbStats;
     }
 
+    /**
+     * @deprecated the server lists are published as immutable snapshots and can be
+     *             read without locking, see {@link #getServerListSnapshot()}
+     */
+    @Deprecated
     public Lock lockAllServerList(boolean write) {
         Lock aproposLock = write ? allServerLock.writeLock() : allServerLock
                 .readLock();
@@ -312,6 +351,11 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
         return aproposLock;
     }
 
+    /**
+     * @deprecated the server lists are published as immutable snapshots and can be
+     *             read without locking, see {@link #getServerListSnapshot()}
+     */
+    @Deprecated
     public Lock lockUpServerList(boolean write) {
         Lock aproposLock = write ? upServerLock.writeLock() : upServerLock
                 .readLock();
@@ -360,6 +404,18 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
         return rule;
     }
 
+    public IPingStrategy getPingStrategy() {
+        return pingStrategy;
+    }
+
+    /**
+     * Set the strategy used to ping all servers, for example {@link ParallelPingStrategy}.
+     * It is used from the next ping round on.
+     */
+    public void setPingStrategy(IPingStrategy pingStrategy) {
+        this.pingStrategy = pingStrategy != null ? pingStrategy : DEFAULT_PING_STRATEGY;
+    }
+
     public boolean isPingInProgress() {
         return pingInProgress.get();
     }
@@ -375,19 +431,23 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
         } else {
             this.ping = null;
             // cancel the timer task
-            lbTimer.cancel();
+            cancelPingTask();
         }
     }
 
     /* Ignore null rules */
 
     public void setRule(IRule rule) {
+        IRule previous = this.rule;
         if (rule != null) {
             this.rule = rule;
         } else {
             /* default rule */
             this.rule = new RoundRobinRule();
         }
+        if (previous != this.rule && previous instanceof RetryRule) {
+            ((RetryRule) previous).detach(this);
+        }
         if (this.rule.getLoadBalancer() != this) {
             this.rule.setLoadBalancer(this);
         }
@@ -400,11 +460,7 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
      *            if true, return only up servers.
      */
     public int getServerCount(boolean onlyAvailable) {
-        if (onlyAvailable) {
-            return upServerList.size();
-        } else {
-            return allServerList.size();
-        }
+        return serverListSnapshot.getServerCount(onlyAvailable);
     }
 
     /**
@@ -416,7 +472,7 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
             try {
                 ArrayList<Server> newList = new ArrayList<Server>();
 
-                newList.addAll(allServerList);
+                newList.addAll(getAllServers());
                 newList.add(newServer);
                 setServersList(newList);
             } catch (Exception e) {
@@ -435,7 +491,7 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
         if (newServers != null && newServers.size() > 0) {
             try {
                 ArrayList<Server> newList = new ArrayList<Server>();
-                newList.addAll(allServerList);
+                newList.addAll(getAllServers());
                 newList.addAll(newServers);
                 setServersList(newList);
             } catch (Exception e) {
@@ -454,7 +510,7 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
 
             try {
                 ArrayList<Server> newList = new ArrayList<Server>();
-                newList.addAll(allServerList);
+                newList.addAll(getAllServers());
 
                 for (Object server : newServers) {
                     if (server != null) {
@@ -482,6 +538,7 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
         logger.debug("LoadBalancer [{}]: clearing server list (SET op)", name);
         
         ArrayList<Server> newServers = new ArrayList<Server>();
+        boolean listChanged = false;
         writeLock.lock();
         try {
             ArrayList<Server> allServers = new ArrayList<Server>();
@@ -504,26 +561,21 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
                 }
 
             }
-            boolean listChanged = false;
-            if (!allServerList.equals(allServers)) {
+            ServerListSnapshot current = serverListSnapshot;
+            Server[] all = ServerListSnapshot.toArray(allServers);
+            Server[] up = current.upServers;
+            if (!Arrays.equals(current.allServers, all)) {
                 listChanged = true;
-                if (changeListeners != null && changeListeners.size() > 0) {
-                   List<Server> oldList = ImmutableList.copyOf(allServerList);
-                   List<Server> newList = ImmutableList.copyOf(allServers);                   
-                   for (ServerListChangeListener l: changeListeners) {
-                       try {
-                           l.serverListChanged(oldList, newList);
-                       } catch (Exception e) {
-                           logger.error("LoadBalancer [{}]: Error invoking server list change listener", name, e);
-                       }
-                   }
-                }
+            } else if (sameServers(current.allServers, all)) {
+                // keep the published array so that anything derived from it stays valid
+                all = current.allServers;
             }
             if (isEnablePrimingConnections()) {
-                for (Server server : allServers) {
-                    if (!allServerList.contains(server)) {
+                Set<Server> existing = new HashSet<Server>(current.getAllServers());
+                for (Server server : all) {
+                    if (!existing.contains(server)) {
                         server.setReadyToServe(false);
-                        newServers.add((Server) server);
+                        newServers.add(server);
                     }
                 }
                 if (primeConnections != null) {
@@ -533,18 +585,81 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
             // This will reset readyToServe flag to true on all servers
             // regardless whether
             // previous priming connections are success or not
-            allServerList = allServers;
             if (canSkipPing()) {
-                for (Server s : allServerList) {
+                for (Server s : all) {
                     s.setAlive(true);
                 }
-                upServerList = allServerList;
-            } else if (listChanged) {
-                forceQuickPing();
+                up = all;
+            }
+            if (all != current.allServers || up != current.upServers) {
+                ServerListSnapshot next = current.next(all, up);
+                publish(next);
+                if (listChanged) {
+                    notifyServerListChangeListener(current.getAllServers(), next.getAllServers());
+                }
             }
         } finally {
             writeLock.unlock();
         }
+        if (listChanged && !canSkipPing()) {
+            forceQuickPing();
+        }
+    }
+
+    /**
+     * A new instance of a server may carry other attributes than the current one, e.g. the metadata of a
+     * discovery instance, so only the same instances are the same servers.
+     */
+    private static boolean sameServers(Server[] current, Server[] next) {
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] != next[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Without a ping nothing else marks a server that was marked down alive again, so when the servers are
+     * refreshed they are all marked alive, as {@link #setServersList(List)} does.
+     */
+    void markServersAliveIfNotPinged() {
+        if (!canSkipPing()) {
+            return;
+        }
+        Lock writeLock = allServerLock.writeLock();
+        writeLock.lock();
+        try {
+            ServerListSnapshot current = serverListSnapshot;
+            for (Server s : current.allServers) {
+                s.setAlive(true);
+            }
+            if (current.upServers != current.allServers) {
+                publish(current.next(current.allServers, current.allServers));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void notifyServerListUpdated(ServerListDelta delta) {
+        for (ServerListChangeListener l: changeListeners) {
+            try {
+                l.serverListUpdated(delta);
+            } catch (Exception e) {
+                logger.error("LoadBalancer [{}]: Error invoking server list change listener", name, e);
+            }
+        }
+    }
+
+    private void notifyServerListChangeListener(List<Server> oldList, List<Server> newList) {
+        for (ServerListChangeListener l: changeListeners) {
+            try {
+                l.serverListChanged(oldList, newList);
+            } catch (Exception e) {
+                logger.error("LoadBalancer [{}]: Error invoking server list change listener", name, e);
+            }
+        }
     }
 
     /* List in string form. SETS, does not add. */
@@ -578,12 +693,12 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
      * @param availableOnly
      */
     public Server getServerByIndex(int index, boolean availableOnly) {
-        try {
-            return (availableOnly ? upServerList.get(index) : allServerList
-                    .get(index));
-        } catch (Exception e) {
+        ServerListSnapshot snapshot = serverListSnapshot;
+        Server[] servers = availableOnly ? snapshot.upServers : snapshot.allServers;
+        if (index < 0 || index >= servers.length) {
             return null;
         }
+        return servers[index];
     }
 
     @Override
@@ -591,34 +706,94 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
         return (availableOnly ? getReachableServers() : getAllServers());
     }
 
+    /**
+     * Get the current immutable snapshot of the "all" and "up" server lists. The
+     * returned object never changes; updates to the load balancer publish a new
+     * snapshot.
+     */
+    public ServerListSnapshot getServerListSnapshot() {
+        return serverListSnapshot;
+    }
+
+    @Monitor(name = PREFIX + "UpServerList", type = DataSourceType.INFORMATIONAL)
     @Override
     public List<Server> getReachableServers() {
-        return Collections.unmodifiableList(upServerList);
+        return serverListSnapshot.getReachableServers();
     }
 
+    @Monitor(name = PREFIX + "AllServerList", type = DataSourceType.INFORMATIONAL)
     @Override
     public List<Server> getAllServers() {
-        return Collections.unmodifiableList(allServerList);
+        return serverListSnapshot.getAllServers();
     }
 
     @Override
     public List<Server> getServerList(ServerGroup serverGroup) {
+        ServerListSnapshot snapshot = serverListSnapshot;
         switch (serverGroup) {
         case ALL:
-            return allServerList;
+            return snapshot.getAllServers();
         case STATUS_UP:
-            return upServerList;
+            return snapshot.getReachableServers();
         case STATUS_NOT_UP:
             ArrayList<Server> notAvailableServers = new ArrayList<Server>(
-                    allServerList);
-            ArrayList<Server> upServers = new ArrayList<Server>(upServerList);
-            notAvailableServers.removeAll(upServers);
+                    snapshot.getAllServers());
+            notAvailableServers.removeAll(new HashSet<Server>(snapshot.getReachableServers()));
             return notAvailableServers;
         }
         return new ArrayList<Server>();
     }
 
+    /**
+     * Replace the up server list while keeping the "all" server list. Only
+     * servers that are part of the current "all" list should be passed in.
+     */
+    void setUpServerList(List<Server> upServers) {
+        Lock writeLock = allServerLock.writeLock();
+        writeLock.lock();
+        try {
+            publish(serverListSnapshot.nextWithUpServers(ServerListSnapshot.toArray(upServers)));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Publish a new snapshot whose up list contains the servers of the current
+     * "all" list that are alive. Nothing is published if the up list is unchanged.
+     */
+    private void publishUpServersFromStatus() {
+        Lock writeLock = allServerLock.writeLock();
+        writeLock.lock();
+        try {
+            ServerListSnapshot current = serverListSnapshot;
+            List<Server> up = new ArrayList<Server>(current.allServers.length);
+            for (Server server : current.allServers) {
+                if (server.isAlive()) {
+                    up.add(server);
+                }
+            }
+            Server[] upServers = ServerListSnapshot.toArray(up);
+            if (!Arrays.equals(current.upServers, upServers)) {
+                publish(current.nextWithUpServers(upServers));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private void publish(ServerListSnapshot next) {
+        serverListSnapshot = next;
+        allServerList = next.getAllServers();
+        upServerList = next.getReachableServers();
+    }
+
     public void cancelPingTask() {
+        ScheduledFuture<?> future = pingFuture;
+        if (future != null) {
+            future.cancel(false);
+        }
         if (lbTimer != null) {
             lbTimer.cancel();
         }
@@ -631,8 +806,31 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
      * @author stonse
      * 
      */
+    /**
+     * Triggered by {@link LoadBalancerScheduler}. A ping round may block for as long as the
+     * {@link IPingStrategy} takes, so it runs on the pool of the scheduler for blocking tasks, and is not
+     * queued again while it waits there.
+     */
     class PingTask extends TimerTask {
         public void run() {
+            if (!pingQueued.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                LoadBalancerScheduler.executeBlocking("NFLoadBalancer-PingTimer-" + name, new Runnable() {
+                    @Override
+                    public void run() {
+                        pingQueued.set(false);
+                        runPingRound();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pingQueued.set(false);
+                logger.error("LoadBalancer [{}]: Could not run the ping round", name, e);
+            }
+        }
+
+        private void runPingRound() {
             try {
             	new Pinger(pingStrategy).runPinger();
             } catch (Exception e) {
@@ -662,26 +860,14 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
             
             // we are "in" - we get to Ping
 
-            Server[] allServers = null;
-            boolean[] results = null;
-
-            Lock allLock = null;
-            Lock upLock = null;
-
             try {
-                /*
-                 * The readLock should be free unless an addServer operation is
-                 * going on...
-                 */
-                allLock = allServerLock.readLock();
-                allLock.lock();
-                allServers = allServerList.toArray(new Server[allServerList.size()]);
-                allLock.unlock();
+                // no need to lock, the snapshot is immutable; the strategy gets
+                // its own copy of the array
+                Server[] allServers = serverListSnapshot.allServers.clone();
 
                 int numCandidates = allServers.length;
-                results = pingerStrategy.pingServers(ping, allServers);
+                boolean[] results = pingerStrategy.pingServers(ping, allServers);
 
-                final List<Server> newUpList = new ArrayList<Server>();
                 final List<Server> changedServers = new ArrayList<Server>();
 
                 for (int i = 0; i < numCandidates; i++) {
@@ -696,15 +882,10 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
                         logger.debug("LoadBalancer [{}]:  Server [{}] status changed to {}", 
                     		name, svr.getId(), (isAlive ? "ALIVE" : "DEAD"));
                     }
-
-                    if (isAlive) {
-                        newUpList.add(svr);
-                    }
                 }
-                upLock = upServerLock.writeLock();
-                upLock.lock();
-                upServerList = newUpList;
-                upLock.unlock();
+                // the server list may have been changed while pinging, build the
+                // up list from the latest snapshot
+                publishUpServersFromStatus();
 
                 notifyServerStatusChangeListener(changedServers);
             } finally {
@@ -774,6 +955,7 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
         logger.error("LoadBalancer [{}]:  markServerDown called on [{}]", name, server.getId());
         server.setAlive(false);
         // forceQuickPing();
+        publishUpServersFromStatus();
 
         notifyServerStatusChangeListener(singleton(server));
     }
@@ -787,26 +969,20 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
             return;
         }
 
-        Lock writeLock = upServerLock.writeLock();
-    	writeLock.lock();
-        try {
-            final List<Server> changedServers = new ArrayList<Server>();
+        final List<Server> changedServers = new ArrayList<Server>();
 
-            for (Server svr : upServerList) {
-                if (svr.isAlive() && (svr.getId().equals(id))) {
-                    triggered = true;
-                    svr.setAlive(false);
-                    changedServers.add(svr);
-                }
-            }
-
-            if (triggered) {
-                logger.error("LoadBalancer [{}]:  markServerDown called for server [{}]", name, id);
-                notifyServerStatusChangeListener(changedServers);
+        for (Server svr : serverListSnapshot.upServers) {
+            if (svr.isAlive() && (svr.getId().equals(id))) {
+                triggered = true;
+                svr.setAlive(false);
+                changedServers.add(svr);
             }
+        }
 
-        } finally {
-            writeLock.unlock();
+        if (triggered) {
+            logger.error("LoadBalancer [{}]:  markServerDown called for server [{}]", name, id);
+            publishUpServersFromStatus();
+            notifyServerStatusChangeListener(changedServers);
         }
     }
 
@@ -830,7 +1006,7 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("{NFLoadBalancer:name=").append(this.getName())
-                .append(",current list of Servers=").append(this.allServerList)
+                .append(",current list of Servers=").append(getAllServers())
                 .append(",Load balancer stats=")
                 .append(this.lbStats.toString()).append("}");
         return sb.toString();
@@ -883,6 +1059,7 @@ public class BaseLoadBalancer extends AbstractLoadBalancer implements
      * Default implementation for <c>IPingStrategy</c>, performs ping
      * serially, which may not be desirable, if your <c>IPing</c>
      * implementation is slow, or you have large number of servers.
+     * Use {@link ParallelPingStrategy} in that case.
      */
     private static class SerialPingStrategy implements IPingStrategy {
 
@@ -104,11 +104,39 @@ public class CompositePredicate extends AbstractServerPredicate {
     public List<Server> getEligibleServers(List<Server> servers, Object loadBalancerKey) {
         List<Server> result = super.getEligibleServers(servers, loadBalancerKey);
         Iterator<AbstractServerPredicate> i = fallbacks.iterator();
-        while (!(result.size() >= minimalFilteredServers && result.size() > (int) (servers.size() * minimalFilteredPercentage))
-                && i.hasNext()) {
+        while (!hasEnoughServers(result.size(), servers.size()) && i.hasNext()) {
             AbstractServerPredicate predicate = i.next();
             result = predicate.getEligibleServers(servers, loadBalancerKey);
         }
         return result;
     }
+
+    @Override
+    boolean hasDefaultFiltering() {
+        if (!super.hasDefaultFiltering()) {
+            return false;
+        }
+        for (int i = 0; i < fallbacks.size(); i++) {
+            if (!fallbacks.get(i).hasDefaultFiltering()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #getEligibleServers(List, Object)}, without building the lists.
+     */
+    @Override
+    int filterIndices(List<Server> servers, Object loadBalancerKey, FilterBuffer buffer) {
+        int count = super.filterIndices(servers, loadBalancerKey, buffer);
+        for (int i = 0; !hasEnoughServers(count, servers.size()) && i < fallbacks.size(); i++) {
+            count = fallbacks.get(i).filterIndices(servers, loadBalancerKey, buffer);
+        }
+        return count;
+    }
+
+    private boolean hasEnoughServers(int filtered, int total) {
+        return filtered >= minimalFilteredServers && filtered > (int) (total * minimalFilteredPercentage);
+    }
 }
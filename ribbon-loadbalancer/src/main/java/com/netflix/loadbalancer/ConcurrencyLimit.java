@@ -0,0 +1,137 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A limit on the number of requests in flight that adapts to the round trip times, in the way of
+ * TCP Vegas: as long as requests take about as long as the fastest one seen, the limit grows by
+ * about the square root of itself; once they take longer than <code>rttTolerance</code> times the
+ * minimum, which means that requests queue up on the server, the limit shrinks in proportion. A
+ * request that timed out shrinks the limit by {@link #BACKOFF_RATIO}.
+ * <p>
+ * The minimum round trip time is measured again every {@link #MIN_RTT_PROBE_SAMPLES} samples, so that
+ * it follows a server that got slower for good instead of throttling it forever.
+ */
+public class ConcurrencyLimit {
+
+    static final double BACKOFF_RATIO = 0.9;
+    static final double SMOOTHING = 0.2;
+    static final int MIN_RTT_PROBE_SAMPLES = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    // guarded by this
+    private long minRttNanos = Long.MAX_VALUE;
+    private int samples;
+
+    public ConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double rttTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limits: min " + minLimit + ", max " + maxLimit);
+        }
+        if (rttTolerance < 1) {
+            throw new IllegalArgumentException("rttTolerance must be at least 1: " + rttTolerance);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @return true if a request may be sent, in which case it must be followed by a call to
+     *         {@link #release(long, boolean)} or {@link #release()}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release a request that completed, and adapt the limit to its round trip time.
+     *
+     * @param dropped true if the request timed out or could not reach the server
+     */
+    public void release(long rttNanos, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        onSample(rttNanos, current, dropped);
+    }
+
+    /**
+     * Release a request that was cancelled, without adapting the limit.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    @VisibleForTesting
+    synchronized void onSample(long rttNanos, int inFlightAtCompletion, boolean dropped) {
+        if (dropped) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return;
+        }
+        if (rttNanos <= 0) {
+            return;
+        }
+        if (++samples >= MIN_RTT_PROBE_SAMPLES) {
+            samples = 0;
+            minRttNanos = rttNanos;
+        } else if (rttNanos < minRttNanos) {
+            minRttNanos = rttNanos;
+        }
+        double current = limit;
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * minRttNanos / rttNanos));
+        double newLimit = current * gradient + Math.sqrt(current);
+        // a limit that is far from being used says nothing about the server, so do not grow it
+        if (newLimit > current && inFlightAtCompletion * 2 < current) {
+            return;
+        }
+        newLimit = current * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return true if no more request may be sent until one completes
+     */
+    public boolean isSaturated() {
+        return inFlight.get() >= getLimit();
+    }
+}
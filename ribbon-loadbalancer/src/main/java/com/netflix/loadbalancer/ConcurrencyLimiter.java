@@ -0,0 +1,183 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
+import com.netflix.client.config.Property;
+import com.netflix.servo.annotations.DataSourceType;
+import com.netflix.servo.annotations.Monitor;
+
+/**
+ * Sheds requests on the client when a backend slows down, instead of piling up requests in flight.
+ * <p>
+ * A request needs a permit from the {@link ConcurrencyLimit} of the client and from the one of its
+ * server, kept in the {@link ServerStats} of the server so that {@link AvailabilityPredicate} skips
+ * servers whose limit is reached. Both limits adapt to the round trip times of the requests.
+ * <p>
+ * The limiter is disabled by default, in which case requests are not limited.
+ */
+public class ConcurrencyLimiter {
+
+    public static final IClientConfigKey<Boolean> ENABLED = new CommonClientConfigKey<Boolean>(
+            "ConcurrencyLimiter.enabled", false) {};
+
+    public static final IClientConfigKey<Integer> SERVER_INITIAL_LIMIT = new CommonClientConfigKey<Integer>(
+            "ConcurrencyLimiter.serverInitialLimit", 20) {};
+
+    public static final IClientConfigKey<Integer> SERVER_MAX_LIMIT = new CommonClientConfigKey<Integer>(
+            "ConcurrencyLimiter.serverMaxLimit", 200) {};
+
+    public static final IClientConfigKey<Integer> CLIENT_INITIAL_LIMIT = new CommonClientConfigKey<Integer>(
+            "ConcurrencyLimiter.clientInitialLimit", 100) {};
+
+    public static final IClientConfigKey<Integer> CLIENT_MAX_LIMIT = new CommonClientConfigKey<Integer>(
+            "ConcurrencyLimiter.clientMaxLimit", 1000) {};
+
+    public static final IClientConfigKey<Integer> MIN_LIMIT = new CommonClientConfigKey<Integer>(
+            "ConcurrencyLimiter.minLimit", 1) {};
+
+    public static final IClientConfigKey<Double> RTT_TOLERANCE = new CommonClientConfigKey<Double>(
+            "ConcurrencyLimiter.rttTolerance", 2.0) {};
+
+    private static final String PREFIX = "ConcurrencyLimiter_";
+
+    /**
+     * A permit to send a request, to be released once when the request completes or is cancelled.
+     */
+    public static class Permit {
+
+        private final ConcurrencyLimit clientLimit;
+        private final ConcurrencyLimit serverLimit;
+
+        Permit(ConcurrencyLimit clientLimit, ConcurrencyLimit serverLimit) {
+            this.clientLimit = clientLimit;
+            this.serverLimit = serverLimit;
+        }
+
+        /**
+         * @param dropped true if the request timed out or could not reach the server
+         */
+        public void release(long rttNanos, boolean dropped) {
+            if (clientLimit != null) {
+                clientLimit.release(rttNanos, dropped);
+            }
+            if (serverLimit != null) {
+                serverLimit.release(rttNanos, dropped);
+            }
+        }
+
+        public void cancel() {
+            if (clientLimit != null) {
+                clientLimit.release();
+            }
+            if (serverLimit != null) {
+                serverLimit.release();
+            }
+        }
+    }
+
+    private static final Permit UNLIMITED = new Permit(null, null);
+
+    private final Property<Boolean> enabled;
+    private final int serverInitialLimit;
+    private final int serverMaxLimit;
+    private final int minLimit;
+    private final double rttTolerance;
+    private final ConcurrencyLimit clientLimit;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ConcurrencyLimiter() {
+        this(Property.of(ENABLED.defaultValue()), SERVER_INITIAL_LIMIT.defaultValue(), SERVER_MAX_LIMIT.defaultValue(),
+                CLIENT_INITIAL_LIMIT.defaultValue(), CLIENT_MAX_LIMIT.defaultValue(), MIN_LIMIT.defaultValue(),
+                RTT_TOLERANCE.defaultValue());
+    }
+
+    public ConcurrencyLimiter(IClientConfig clientConfig) {
+        this(clientConfig.getDynamicProperty(ENABLED), clientConfig.getOrDefault(SERVER_INITIAL_LIMIT),
+                clientConfig.getOrDefault(SERVER_MAX_LIMIT), clientConfig.getOrDefault(CLIENT_INITIAL_LIMIT),
+                clientConfig.getOrDefault(CLIENT_MAX_LIMIT), clientConfig.getOrDefault(MIN_LIMIT),
+                clientConfig.getOrDefault(RTT_TOLERANCE));
+    }
+
+    public ConcurrencyLimiter(Property<Boolean> enabled, int serverInitialLimit, int serverMaxLimit,
+            int clientInitialLimit, int clientMaxLimit, int minLimit, double rttTolerance) {
+        this.enabled = enabled;
+        this.serverInitialLimit = serverInitialLimit;
+        this.serverMaxLimit = serverMaxLimit;
+        this.minLimit = minLimit;
+        this.rttTolerance = rttTolerance;
+        this.clientLimit = new ConcurrencyLimit(clientInitialLimit, minLimit, clientMaxLimit, rttTolerance);
+    }
+
+    public boolean isEnabled() {
+        return enabled.getOrDefault();
+    }
+
+    /**
+     * @param stats stats of the server the request is sent to, or null if there are none
+     * @return a permit to send the request, or null if a limit is reached and the request should not be sent
+     */
+    public Permit tryAcquire(@Nullable ServerStats stats) {
+        if (!isEnabled()) {
+            return UNLIMITED;
+        }
+        if (!clientLimit.tryAcquire()) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        ConcurrencyLimit serverLimit = null;
+        if (stats != null) {
+            serverLimit = stats.getConcurrencyLimit();
+            if (serverLimit == null) {
+                serverLimit = stats.initConcurrencyLimit(
+                        new ConcurrencyLimit(serverInitialLimit, minLimit, serverMaxLimit, rttTolerance));
+            }
+            if (!serverLimit.tryAcquire()) {
+                clientLimit.release();
+                rejected.incrementAndGet();
+                return null;
+            }
+        }
+        return new Permit(clientLimit, serverLimit);
+    }
+
+    public ConcurrencyLimit getClientLimit() {
+        return clientLimit;
+    }
+
+    @Monitor(name = PREFIX + "Limit", type = DataSourceType.GAUGE)
+    public int getLimit() {
+        return clientLimit.getLimit();
+    }
+
+    @Monitor(name = PREFIX + "InFlight", type = DataSourceType.GAUGE)
+    public int getInFlight() {
+        return clientLimit.getInFlight();
+    }
+
+    @Monitor(name = PREFIX + "Rejected", type = DataSourceType.COUNTER)
+    public long getRejected() {
+        return rejected.get();
+    }
+}
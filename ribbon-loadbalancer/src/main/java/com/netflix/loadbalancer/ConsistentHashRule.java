@@ -0,0 +1,285 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
+import com.netflix.client.config.Property;
+
+/**
+ * A rule that maps the load balancer key passed to {@link #choose(Object)} to a server, so that requests
+ * with the same key go to the same server as long as it is reachable. This is useful to get cache
+ * affinity on stateful servers.
+ * <p>
+ * By default the servers are placed on a hash ring with a number of virtual nodes each, and a key goes to
+ * the server owning the next point of the ring. Alternatively, with rendezvous hashing, a key goes to the
+ * server with the highest hash of the key and the server. In both cases, when a server is added or removed
+ * only the keys of that server move. The ring is only rebuilt when the reachable servers change, and finds
+ * a server in O(log n); rendezvous hashing needs no table but looks at every server for every request.
+ * <p>
+ * To keep popular keys from overloading a server, the load of a server is bounded to
+ * <code>loadFactor</code> times the average number of active requests. A key whose server is above the
+ * bound, or is skipped by {@link AvailabilityPredicate}, goes to the next server on the ring, or the next
+ * best server with rendezvous hashing. A load factor below 1 disables the bound. The average takes a look
+ * at the statistics of every server, so it is computed at most every 100 ms and reused meanwhile.
+ * <p>
+ * The key is hashed from its {@link Object#toString()}. Requests without a key are distributed round robin.
+ * The behavior is configured with
+ * <pre>{@code
+ * <clientName>.<nameSpace>.ConsistentHashRule.virtualNodes (default 100)
+ * <clientName>.<nameSpace>.ConsistentHashRule.loadFactor (default 1.25)
+ * <clientName>.<nameSpace>.ConsistentHashRule.rendezvous (default false)
+ * }</pre>
+ */
+public class ConsistentHashRule extends ClientConfigEnabledRoundRobinRule {
+
+    private static final IClientConfigKey<Integer> VIRTUAL_NODES = new CommonClientConfigKey<Integer>("ConsistentHashRule.virtualNodes", 100) {};
+    private static final IClientConfigKey<Double> LOAD_FACTOR = new CommonClientConfigKey<Double>("ConsistentHashRule.loadFactor", 1.25d) {};
+    private static final IClientConfigKey<Boolean> RENDEZVOUS = new CommonClientConfigKey<Boolean>("ConsistentHashRule.rendezvous", false) {};
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private static final long ACTIVE_REQUESTS_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private Property<Integer> virtualNodes;
+    private Property<Double> loadFactor;
+    private Property<Boolean> rendezvous;
+
+    private AvailabilityPredicate availabilityPredicate;
+
+    private volatile HashTable table;
+
+    public ConsistentHashRule() {
+        this(VIRTUAL_NODES.defaultValue(), LOAD_FACTOR.defaultValue(), RENDEZVOUS.defaultValue());
+    }
+
+    public ConsistentHashRule(int virtualNodes, double loadFactor, boolean rendezvous) {
+        super();
+        this.virtualNodes = Property.of(virtualNodes);
+        this.loadFactor = Property.of(loadFactor);
+        this.rendezvous = Property.of(rendezvous);
+        availabilityPredicate = new AvailabilityPredicate(this);
+    }
+
+    @Override
+    public void initWithNiwsConfig(IClientConfig clientConfig) {
+        virtualNodes = clientConfig.getDynamicProperty(VIRTUAL_NODES);
+        loadFactor = clientConfig.getDynamicProperty(LOAD_FACTOR);
+        rendezvous = clientConfig.getDynamicProperty(RENDEZVOUS);
+        availabilityPredicate = new AvailabilityPredicate(this, clientConfig);
+    }
+
+    @Override
+    public Server choose(Object key) {
+        ILoadBalancer lb = getLoadBalancer();
+        if (key == null || lb == null) {
+            return super.choose(key);
+        }
+        List<Server> servers = lb.getReachableServers();
+        if (servers.isEmpty()) {
+            return null;
+        }
+        boolean useRendezvous = rendezvous.getOrDefault();
+        HashTable current = getTable(servers, useRendezvous);
+        long keyHash = HASH.hashUnencodedChars(key.toString()).asLong();
+        // looked up on every call as BaseLoadBalancer may set its stats after its rule
+        LoadBalancerStats stats = lb instanceof AbstractLoadBalancer
+                ? ((AbstractLoadBalancer) lb).getLoadBalancerStats() : null;
+        Load load = new Load(current, stats, loadFactor.getOrDefault());
+        return useRendezvous ? chooseRendezvous(current, keyHash, load) : chooseOnRing(current, keyHash, load);
+    }
+
+    private HashTable getTable(List<Server> servers, boolean useRendezvous) {
+        HashTable current = table;
+        int nodes = useRendezvous ? 0 : Math.max(1, virtualNodes.getOrDefault());
+        // the lists of BaseLoadBalancer are only replaced when the servers change
+        if (current == null || current.virtualNodes != nodes
+                || (current.serverList != servers && !current.serverList.equals(servers))) {
+            current = new HashTable(servers, nodes);
+            table = current;
+        }
+        return current;
+    }
+
+    private Server chooseOnRing(HashTable current, long keyHash, Load load) {
+        long[] points = current.points;
+        int start = Arrays.binarySearch(points, keyHash);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        // every server owns many points, only look at each of them once
+        BitSet rejected = null;
+        int rejectedCount = 0;
+        for (int i = 0; i < points.length && rejectedCount < current.servers.length; i++) {
+            int owner = current.owners[(start + i) % points.length];
+            if (rejected != null && rejected.get(owner)) {
+                continue;
+            }
+            if (load.accepts(owner)) {
+                return current.servers[owner];
+            }
+            if (rejected == null) {
+                rejected = new BitSet(current.servers.length);
+            }
+            rejected.set(owner);
+            rejectedCount++;
+        }
+        // every server is busy, keep the affinity
+        return current.servers[current.owners[start % points.length]];
+    }
+
+    private Server chooseRendezvous(HashTable current, long keyHash, Load load) {
+        int best = -1;
+        long bestWeight = 0;
+        int bestAccepted = -1;
+        long bestAcceptedWeight = 0;
+        for (int i = 0; i < current.servers.length; i++) {
+            long weight = mix(keyHash ^ current.serverHashes[i]);
+            if (best < 0 || weight > bestWeight) {
+                best = i;
+                bestWeight = weight;
+            }
+            if ((bestAccepted < 0 || weight > bestAcceptedWeight) && load.accepts(i)) {
+                bestAccepted = i;
+                bestAcceptedWeight = weight;
+            }
+        }
+        return current.servers[bestAccepted >= 0 ? bestAccepted : best];
+    }
+
+    /**
+     * Finalization step of MurmurHash3, spreads the bits of the combined hashes.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Checks the servers against the load bound. The bound is only computed when a server with active
+     * requests is looked at.
+     */
+    private class Load {
+        private final HashTable table;
+        private final LoadBalancerStats stats;
+        private final double factor;
+        private int capacity = -1;
+
+        Load(HashTable table, LoadBalancerStats stats, double factor) {
+            this.table = table;
+            this.stats = stats;
+            this.factor = factor;
+        }
+
+        boolean accepts(int index) {
+            if (stats == null) {
+                return true;
+            }
+            ServerStats serverStats = stats.getSingleServerStat(table.servers[index]);
+            if (availabilityPredicate.shouldSkipServer(serverStats)) {
+                return false;
+            }
+            int active = serverStats.getActiveRequestsCount();
+            if (factor < 1 || active == 0) {
+                return true;
+            }
+            if (capacity < 0) {
+                capacity = (int) Math.ceil(factor * (table.activeRequests(stats) + 1) / table.servers.length);
+            }
+            return active < capacity;
+        }
+    }
+
+    private static final class HashTable {
+        final List<Server> serverList;
+        final Server[] servers;
+        final long[] serverHashes;
+        final int virtualNodes;
+        // sorted points of the ring and the index of the server owning each of them
+        final long[] points;
+        final int[] owners;
+        private volatile ActiveRequests activeRequests;
+
+        HashTable(List<Server> serverList, int virtualNodes) {
+            this.serverList = serverList;
+            this.servers = serverList.toArray(new Server[serverList.size()]);
+            this.virtualNodes = virtualNodes;
+            this.serverHashes = new long[servers.length];
+            for (int i = 0; i < servers.length; i++) {
+                serverHashes[i] = HASH.hashUnencodedChars(servers[i].getId()).asLong();
+            }
+            TreeMap<Long, Integer> ring = new TreeMap<Long, Integer>();
+            for (int i = 0; i < servers.length; i++) {
+                for (int node = 0; node < virtualNodes; node++) {
+                    ring.put(HASH.hashUnencodedChars(servers[i].getId() + "#" + node).asLong(), i);
+                }
+            }
+            points = new long[ring.size()];
+            owners = new int[ring.size()];
+            int i = 0;
+            for (Map.Entry<Long, Integer> entry : ring.entrySet()) {
+                points[i] = entry.getKey();
+                owners[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        /**
+         * @return the total number of active requests of the servers, at most {@link #ACTIVE_REQUESTS_REFRESH_NANOS} old
+         */
+        long activeRequests(LoadBalancerStats stats) {
+            ActiveRequests current = activeRequests;
+            long now = System.nanoTime();
+            if (current == null || current.stats != stats || now - current.nanoTime > ACTIVE_REQUESTS_REFRESH_NANOS) {
+                long total = 0;
+                for (Server server : servers) {
+                    total += stats.getSingleServerStat(server).getActiveRequestsCount();
+                }
+                current = new ActiveRequests(stats, total, now);
+                activeRequests = current;
+            }
+            return current.total;
+        }
+    }
+
+    private static final class ActiveRequests {
+        final LoadBalancerStats stats;
+        final long total;
+        final long nanoTime;
+
+        ActiveRequests(LoadBalancerStats stats, long total, long nanoTime) {
+            this.stats = stats;
+            this.total = total;
+            this.nanoTime = nanoTime;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.netflix.client.IClientConfigAware;
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
+import com.netflix.client.config.Property;
+
+/**
+ * A server list filter that gives every instance of a client fleet a stable, evenly spread subset of the
+ * servers, as an alternative to the random subsets of {@link ServerListSubsetFilter}.
+ * <p>
+ * The servers are placed on a ring in the order of their ids. The ring is cut in as many equal parts as
+ * there are client instances, and the client with index <code>i</code> uses the servers starting at the
+ * beginning of part <code>i</code>. A subset holds at least <code>DeterministicSubsetFilter.size</code>
+ * servers, and more if needed to cover the ring, so every server is used by the same number of clients,
+ * give or take one. As the subset only depends on the ids of the servers, a refresh of the server list
+ * that does not change the servers does not change the subset, and adding or removing a server only
+ * shifts the subset by a member or two.
+ * <p>
+ * Each instance must be given its index and the size of the fleet with
+ * <pre>{@code
+ * <clientName>.<nameSpace>.DeterministicSubsetFilter.instanceIndex
+ * <clientName>.<nameSpace>.DeterministicSubsetFilter.instanceCount
+ * }</pre>
+ * Until both are set, all servers are used. Unlike {@link ServerListSubsetFilter}, unhealthy servers are not
+ * evicted from the subset, they are left to the ping and to the rule.
+ *
+ * @param <T>
+ */
+public class DeterministicSubsetFilter<T extends Server> extends ZoneAffinityServerListFilter<T> implements IClientConfigAware {
+
+    private static final IClientConfigKey<Integer> INSTANCE_INDEX = new CommonClientConfigKey<Integer>("DeterministicSubsetFilter.instanceIndex", -1) {};
+    private static final IClientConfigKey<Integer> INSTANCE_COUNT = new CommonClientConfigKey<Integer>("DeterministicSubsetFilter.instanceCount", 1) {};
+    private static final IClientConfigKey<Integer> SIZE = new CommonClientConfigKey<Integer>("DeterministicSubsetFilter.size", 20) {};
+
+    private static final Comparator<Server> BY_ID = Comparator.comparing(Server::getId);
+
+    // assigned by initWithNiwsConfig, which the super constructor calls, so they must not have initializers
+    private Property<Integer> instanceIndex;
+    private Property<Integer> instanceCount;
+    private Property<Integer> sizeProp;
+
+    /**
+     * @deprecated DeterministicSubsetFilter should be created with an IClientConfig. See {@link DeterministicSubsetFilter#DeterministicSubsetFilter(IClientConfig)}
+     */
+    @Deprecated
+    public DeterministicSubsetFilter() {
+        instanceIndex = Property.of(INSTANCE_INDEX.defaultValue());
+        instanceCount = Property.of(INSTANCE_COUNT.defaultValue());
+        sizeProp = Property.of(SIZE.defaultValue());
+    }
+
+    public DeterministicSubsetFilter(IClientConfig clientConfig) {
+        super(clientConfig);
+    }
+
+    @Override
+    public void initWithNiwsConfig(IClientConfig clientConfig) {
+        super.initWithNiwsConfig(clientConfig);
+        instanceIndex = clientConfig.getDynamicProperty(INSTANCE_INDEX);
+        instanceCount = clientConfig.getDynamicProperty(INSTANCE_COUNT);
+        sizeProp = clientConfig.getDynamicProperty(SIZE);
+    }
+
+    @Override
+    public List<T> getFilteredListOfServers(List<T> servers) {
+        List<T> candidates = super.getFilteredListOfServers(servers);
+        if (candidates == null) {
+            return null;
+        }
+        return subset(candidates, instanceIndex.getOrDefault(), instanceCount.getOrDefault(), sizeProp.getOrDefault());
+    }
+
+    /**
+     * Get the subset of the servers used by the client instance with the given index.
+     */
+    static <T extends Server> List<T> subset(List<T> servers, int index, int count, int minSize) {
+        int total = servers.size();
+        if (count <= 1 || index < 0 || index >= count) {
+            return servers;
+        }
+        // enough servers for the subsets of all instances to cover the ring
+        int size = Math.max(minSize, (total + count - 1) / count);
+        if (size >= total) {
+            return servers;
+        }
+        List<T> ring = Lists.newArrayList(servers);
+        ring.sort(BY_ID);
+        int start = (int) ((long) index * total / count);
+        List<T> subset = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++) {
+            subset.add(ring.get((start + i) % total));
+        }
+        return subset;
+    }
+}
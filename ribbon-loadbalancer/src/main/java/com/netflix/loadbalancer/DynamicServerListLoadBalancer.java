@@ -250,7 +250,13 @@ public class DynamicServerListLoadBalancer<T extends Server> extends BaseLoadBal
     }
 
     /**
-     * Update the AllServer list in the LoadBalancer if necessary and enabled
+     * Update the AllServer list in the LoadBalancer if necessary and enabled.
+     * <p>
+     * Most updates do not change anything, e.g. a server list that returns the same instances for servers
+     * that did not change, so the list is first compared with the current one without allocating. Otherwise
+     * only the servers added or changed are taken from the new list, the others keep their current instance
+     * and status, and the listeners are notified with the {@link ServerListDelta}. A server is changed when
+     * the new list has another instance of it.
      * 
      * @param ls
      */
@@ -258,19 +264,75 @@ public class DynamicServerListLoadBalancer<T extends Server> extends BaseLoadBal
         // other threads might be doing this - in which case, we pass
         if (serverListUpdateInProgress.compareAndSet(false, true)) {
             try {
-                for (T s : ls) {
+                List<Server> current = getAllServers();
+                if (sameInstances(current, ls)) {
+                    LOGGER.debug("Server list of {} is unchanged", getName());
+                    markServersAliveIfNotPinged();
+                    return;
+                }
+                List<Server> servers = new ArrayList<Server>(ls.size());
+                ServerListDelta delta = diff(current, ls, servers);
+                if (delta.isEmpty()) {
+                    markServersAliveIfNotPinged();
+                    return;
+                }
+                for (Server s : delta.getAdded()) {
                     s.setAlive(true); // set so that clients can start using these
                                       // servers right away instead
                                       // of having to wait out the ping cycle.
                 }
-                setServersList(ls);
+                for (Server s : delta.getChanged()) {
+                    s.setAlive(true);
+                }
+                setServersList(servers);
                 super.forceQuickPing();
+                notifyServerListUpdated(delta);
             } finally {
                 serverListUpdateInProgress.set(false);
             }
         }
     }
 
+    /**
+     * Compare the new list with the current one.
+     *
+     * @param servers filled with the servers to use: the new list, where unchanged servers are replaced
+     *                by their current instance
+     */
+    private ServerListDelta diff(List<Server> current, List<T> ls, List<Server> servers) {
+        Map<Server, Server> remaining = new HashMap<Server, Server>(current.size() * 4 / 3 + 1);
+        for (Server s : current) {
+            remaining.put(s, s);
+        }
+        List<Server> added = new ArrayList<Server>();
+        List<Server> changed = new ArrayList<Server>();
+        for (T s : ls) {
+            Server existing = remaining.remove(s);
+            if (existing == null) {
+                added.add(s);
+                servers.add(s);
+            } else if (existing != s) {
+                changed.add(s);
+                servers.add(s);
+            } else {
+                servers.add(existing);
+            }
+        }
+        return new ServerListDelta(added, new ArrayList<Server>(remaining.values()), changed);
+    }
+
+    private static boolean sameInstances(List<Server> current, List<? extends Server> ls) {
+        if (current.size() != ls.size()) {
+            return false;
+        }
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i) != ls.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("DynamicServerListLoadBalancer:");
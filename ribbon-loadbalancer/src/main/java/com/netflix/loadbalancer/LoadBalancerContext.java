@@ -18,6 +18,8 @@
 package com.netflix.loadbalancer;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.netflix.client.ClientException;
 import com.netflix.client.ClientRequest;
 import com.netflix.client.DefaultLoadBalancerRetryHandler;
@@ -25,6 +27,7 @@ import com.netflix.client.IClientConfigAware;
 import com.netflix.client.RetryHandler;
 import com.netflix.client.config.CommonClientConfigKey;
 import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
 import com.netflix.servo.monitor.Monitors;
 import com.netflix.servo.monitor.Timer;
 import com.netflix.util.Pair;
@@ -35,6 +38,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -45,6 +49,14 @@ import java.util.concurrent.TimeUnit;
 public class LoadBalancerContext implements IClientConfigAware {
     private static final Logger logger = LoggerFactory.getLogger(LoadBalancerContext.class);
 
+    /**
+     * Maximum number of URIs reconstructed with a server to keep for reuse, 0 (the default) to reconstruct them
+     * every time. The cache is keyed by the full URI, so it only pays off for clients that request a small set
+     * of URIs over and over; with paths or query strings that vary per request nearly every lookup misses.
+     */
+    public static final IClientConfigKey<Integer> RECONSTRUCTED_URI_CACHE_SIZE = new CommonClientConfigKey<Integer>(
+            "ReconstructedURICacheSize", 0) {};
+
     protected String clientName = "default";          
 
     protected String vipAddresses;
@@ -61,6 +73,15 @@ public class LoadBalancerContext implements IClientConfigAware {
 
     private volatile Timer tracer;
 
+    private volatile RetryBudget retryBudget = new RetryBudget();
+
+    private volatile RetryBackoff retryBackoff = new RetryBackoff();
+
+    private volatile ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
+
+    private volatile Cache<ReconstructedURIKey, URI> reconstructedURIs =
+            createReconstructedURICache(RECONSTRUCTED_URI_CACHE_SIZE.defaultValue());
+
     public LoadBalancerContext(ILoadBalancer lb) {
         this.lb = lb;
     }
@@ -96,10 +117,16 @@ public class LoadBalancerContext implements IClientConfigAware {
         maxAutoRetriesNextServer = clientConfig.getOrDefault(CommonClientConfigKey.MaxAutoRetriesNextServer);
         okToRetryOnAllOperations = clientConfig.getOrDefault(CommonClientConfigKey.OkToRetryOnAllOperations);
         defaultRetryHandler = new DefaultLoadBalancerRetryHandler(clientConfig);
+        retryBudget = new RetryBudget(clientConfig);
+        retryBackoff = new RetryBackoff(clientConfig);
+        concurrencyLimiter = new ConcurrencyLimiter(clientConfig);
+        reconstructedURIs = createReconstructedURICache(clientConfig.getOrDefault(RECONSTRUCTED_URI_CACHE_SIZE));
         
         tracer = getExecuteTracer();
 
         Monitors.registerObject("Client_" + clientName, this);
+        Monitors.registerObject("RetryBudget_" + clientName, retryBudget);
+        Monitors.registerObject("ConcurrencyLimiter_" + clientName, concurrencyLimiter);
     }
 
     public Timer getExecuteTracer() {
@@ -265,6 +292,9 @@ public class LoadBalancerContext implements IClientConfigAware {
      * to update related stats.  
      */
     public void noteRequestCompletion(ServerStats stats, Object response, Throwable e, long responseTime, RetryHandler errorHandler) {
+        if (e == null) {
+            retryBudget.onRequestSucceeded();
+        }
     	if (stats == null) {
     		return;
     	}
@@ -585,6 +615,20 @@ public class LoadBalancerContext implements IClientConfigAware {
             scheme = deriveSchemeAndPortFromPartialUri(original).first();
         }
 
+        Cache<ReconstructedURIKey, URI> cache = reconstructedURIs;
+        if (cache == null) {
+            return buildURIWithServer(scheme, host, port, original);
+        }
+        ReconstructedURIKey key = new ReconstructedURIKey(scheme, host, port, original.toString());
+        URI newURI = cache.getIfPresent(key);
+        if (newURI == null) {
+            newURI = buildURIWithServer(scheme, host, port, original);
+            cache.put(key, newURI);
+        }
+        return newURI;
+    }
+
+    private static URI buildURIWithServer(String scheme, String host, int port, URI original) {
         try {
             StringBuilder sb = new StringBuilder();
             sb.append(scheme).append("://");
@@ -609,6 +653,53 @@ public class LoadBalancerContext implements IClientConfigAware {
         }
     }
 
+    private static Cache<ReconstructedURIKey, URI> createReconstructedURICache(int size) {
+        if (size <= 0) {
+            return null;
+        }
+        return CacheBuilder.newBuilder().maximumSize(size).build();
+    }
+
+    /**
+     * The URI as given by the caller and the scheme, host and port of the server it is reconstructed with.
+     */
+    private static final class ReconstructedURIKey {
+        private final String scheme;
+        private final String host;
+        private final int port;
+        private final String original;
+
+        ReconstructedURIKey(String scheme, String host, int port, String original) {
+            this.scheme = scheme;
+            this.host = host;
+            this.port = port;
+            this.original = original;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ReconstructedURIKey)) {
+                return false;
+            }
+            ReconstructedURIKey other = (ReconstructedURIKey) o;
+            return port == other.port
+                    && original.equals(other.original)
+                    && host.equals(other.host)
+                    && Objects.equals(scheme, other.scheme);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = original.hashCode();
+            result = 31 * result + host.hashCode();
+            result = 31 * result + port;
+            return 31 * result + Objects.hashCode(scheme);
+        }
+    }
+
     protected int getRetriesNextServer(IClientConfig overriddenClientConfig) {
         int numRetries = maxAutoRetriesNextServer;
         if (overriddenClientConfig != null) {
@@ -657,6 +748,39 @@ public class LoadBalancerContext implements IClientConfigAware {
         this.defaultRetryHandler = retryHandler;
     }
 
+    /**
+     * @return the budget that caps the retries made by this client
+     */
+    public final RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    public final void setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * @return the backoff between the retries made by this client
+     */
+    public final RetryBackoff getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public final void setRetryBackoff(RetryBackoff retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    /**
+     * @return the limiter of the requests in flight from this client
+     */
+    public final ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    public final void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
     public final boolean isOkToRetryOnAllOperations() {
         return okToRetryOnAllOperations;
     }
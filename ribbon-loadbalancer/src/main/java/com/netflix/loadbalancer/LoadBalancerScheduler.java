@@ -0,0 +1,170 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
+import com.netflix.client.config.Property;
+
+/**
+ * A scheduler shared by the periodic tasks of all load balancers in the JVM: the ping task of
+ * {@link BaseLoadBalancer} and the weight calculation of {@link WeightedResponseTimeRule}, as well
+ * as the retries of {@link RetryRule#chooseAsync(Object)}.
+ * <p>
+ * Before, each of these had its own timer thread, which for hundreds of clients amounted to a lot of
+ * mostly idle threads. The tasks now run on a small pool of daemon threads whose size is taken from
+ * {@link #POOL_SIZE} and follows changes to it, in the same way as
+ * <code>com.netflix.utils.ScheduledThreadPoolExectuorWithDynamicSize</code>.
+ * <p>
+ * As the threads are shared, the tasks run on them must not block. Work that may block, like a ping round
+ * with the default {@link SerialPingStrategy} and a slow {@link IPing}, is only triggered by the scheduler
+ * and run with {@link #executeBlocking(String, Runnable)} on a separate pool whose size is taken from
+ * {@link #BLOCKING_POOL_SIZE}, so that it cannot delay the other tasks. The refreshes of
+ * {@link PollingServerListUpdater} keep their own executor for the same reason.
+ */
+public final class LoadBalancerScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadBalancerScheduler.class);
+
+    public static final IClientConfigKey<Integer> POOL_SIZE = new CommonClientConfigKey<Integer>(
+            "niws.loadbalancer.scheduler.poolSize", 4) {};
+
+    public static final IClientConfigKey<Integer> BLOCKING_POOL_SIZE = new CommonClientConfigKey<Integer>(
+            "niws.loadbalancer.scheduler.blockingPoolSize", 8) {};
+
+    private static final ScheduledThreadPoolExecutor executor;
+    private static final ThreadPoolExecutor blockingExecutor;
+    private static final AtomicBoolean configured = new AtomicBoolean(false);
+
+    static {
+        executor = new ScheduledThreadPoolExecutor(POOL_SIZE.defaultValue(), new ThreadFactoryBuilder()
+                .setNameFormat("LoadBalancerScheduler-%d")
+                .setDaemon(true)
+                .build());
+        executor.setRemoveOnCancelPolicy(true);
+        blockingExecutor = new ThreadPoolExecutor(BLOCKING_POOL_SIZE.defaultValue(), BLOCKING_POOL_SIZE.defaultValue(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder()
+                        .setNameFormat("LoadBalancerScheduler-blocking-%d")
+                        .setDaemon(true)
+                        .build());
+        blockingExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private LoadBalancerScheduler() {
+    }
+
+    /**
+     * Bind the sizes of the pools to {@link #POOL_SIZE} and {@link #BLOCKING_POOL_SIZE} of the given
+     * configuration. Only the first call has an effect, as the properties are global.
+     */
+    public static void configure(IClientConfig clientConfig) {
+        if (clientConfig != null && configured.compareAndSet(false, true)) {
+            Property<Integer> poolSize = clientConfig.getGlobalProperty(POOL_SIZE);
+            poolSize.onChange(LoadBalancerScheduler::setPoolSize);
+            setPoolSize(poolSize.getOrDefault());
+            Property<Integer> blockingPoolSize = clientConfig.getGlobalProperty(BLOCKING_POOL_SIZE);
+            blockingPoolSize.onChange(LoadBalancerScheduler::setBlockingPoolSize);
+            setBlockingPoolSize(blockingPoolSize.getOrDefault());
+        }
+    }
+
+    static void setPoolSize(Integer poolSize) {
+        if (poolSize != null && poolSize > 0 && poolSize != executor.getCorePoolSize()) {
+            logger.info("Setting the pool size of the load balancer scheduler to {}", poolSize);
+            executor.setCorePoolSize(poolSize);
+        }
+    }
+
+    public static int getPoolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    static synchronized void setBlockingPoolSize(Integer poolSize) {
+        if (poolSize != null && poolSize > 0 && poolSize != blockingExecutor.getCorePoolSize()) {
+            logger.info("Setting the pool size of the load balancer scheduler for blocking tasks to {}", poolSize);
+            // the maximum size can never be below the core size
+            if (poolSize > blockingExecutor.getMaximumPoolSize()) {
+                blockingExecutor.setMaximumPoolSize(poolSize);
+                blockingExecutor.setCorePoolSize(poolSize);
+            } else {
+                blockingExecutor.setCorePoolSize(poolSize);
+                blockingExecutor.setMaximumPoolSize(poolSize);
+            }
+        }
+    }
+
+    public static int getBlockingPoolSize() {
+        return blockingExecutor.getCorePoolSize();
+    }
+
+    /**
+     * Schedule a task with a fixed delay between the end of a run and the start of the next one, like
+     * {@link java.util.Timer#schedule(java.util.TimerTask, long, long)}. Unlike with
+     * {@link ScheduledExecutorService#scheduleWithFixedDelay}, a run that fails does not cancel the
+     * next ones.
+     *
+     * @param name name of the task used for logging
+     */
+    public static ScheduledFuture<?> scheduleWithFixedDelay(String name, Runnable task, long initialDelay,
+            long delay, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(logErrors(name, task), initialDelay, delay, unit);
+    }
+
+    /**
+     * Schedule a task to run once after the given delay.
+     *
+     * @param name name of the task used for logging
+     */
+    public static ScheduledFuture<?> schedule(String name, Runnable task, long delay, TimeUnit unit) {
+        return executor.schedule(logErrors(name, task), delay, unit);
+    }
+
+    /**
+     * Run a task that may block, triggered by a scheduled task, on the pool for blocking tasks. Tasks wait
+     * in a queue when all its threads are busy, so callers should make sure a task is not queued again
+     * while it is waiting.
+     *
+     * @param name name of the task used for logging
+     */
+    public static void executeBlocking(String name, Runnable task) {
+        blockingExecutor.execute(logErrors(name, task));
+    }
+
+    private static Runnable logErrors(String name, Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                logger.error("Error running scheduled task {}", name, e);
+            }
+        };
+    }
+}
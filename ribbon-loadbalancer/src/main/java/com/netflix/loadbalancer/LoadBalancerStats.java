@@ -17,6 +17,7 @@
 */
 package com.netflix.loadbalancer;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -36,12 +37,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Class that acts as a repository of operational charateristics and statistics
@@ -61,6 +64,12 @@ public class LoadBalancerStats implements IClientConfigAware {
     public static final IClientConfigKey<Integer> ACTIVE_REQUESTS_COUNT_TIMEOUT = new CommonClientConfigKey<Integer>(
             "niws.loadbalancer.serverStats.activeRequestsCount.effectiveWindowSeconds", 60 * 10) {};
 
+    public static final IClientConfigKey<Integer> RESPONSE_TIME_EWMA_DECAY_SECONDS = new CommonClientConfigKey<Integer>(
+            "niws.loadbalancer.serverStats.responseTimeEwma.decaySeconds", 10) {};
+
+    public static final IClientConfigKey<Integer> ZONE_SNAPSHOT_REFRESH_INTERVAL_MILLIS = new CommonClientConfigKey<Integer>(
+            "niws.loadbalancer.zoneSnapshot.refreshIntervalMillis", 100) {};
+
     public static final IClientConfigKey<Integer> CONNECTION_FAILURE_COUNT_THRESHOLD = new CommonClientConfigKey<Integer>(
             "niws.loadbalancer.%s.connectionFailureCountThreshold", 3) {};
 
@@ -92,6 +101,14 @@ public class LoadBalancerStats implements IClientConfigAware {
 
     private UnboxedIntProperty activeRequestsCountTimeout = new UnboxedIntProperty(ACTIVE_REQUESTS_COUNT_TIMEOUT.defaultValue());
 
+    private UnboxedIntProperty responseTimeEwmaDecaySeconds = new UnboxedIntProperty(RESPONSE_TIME_EWMA_DECAY_SECONDS.defaultValue());
+
+    private UnboxedIntProperty zoneSnapshotRefreshInterval = new UnboxedIntProperty(ZONE_SNAPSHOT_REFRESH_INTERVAL_MILLIS.defaultValue());
+
+    private volatile ZoneSnapshots zoneSnapshots;
+
+    private final AtomicBoolean zoneSnapshotsRefreshing = new AtomicBoolean(false);
+
     private final LoadingCache<Server, ServerStats> serverStatsCache = CacheBuilder.newBuilder()
             .expireAfterAccess(30, TimeUnit.MINUTES)
             .removalListener((RemovalListener<Server, ServerStats>) notification -> notification.getValue().close())
@@ -104,7 +121,6 @@ public class LoadBalancerStats implements IClientConfigAware {
     protected ServerStats createServerStats(Server server) {
         ServerStats ss = new ServerStats(this);
         //configure custom settings
-        ss.setBufferSize(1000);
         ss.setPublishInterval(1000);                    
         ss.initialize(server);
         return ss;        
@@ -138,6 +154,10 @@ public class LoadBalancerStats implements IClientConfigAware {
         );
         this.activeRequestsCountTimeout = new UnboxedIntProperty(
                 clientConfig.getGlobalProperty(ACTIVE_REQUESTS_COUNT_TIMEOUT));
+        this.responseTimeEwmaDecaySeconds = new UnboxedIntProperty(
+                clientConfig.getGlobalProperty(RESPONSE_TIME_EWMA_DECAY_SECONDS));
+        this.zoneSnapshotRefreshInterval = new UnboxedIntProperty(
+                clientConfig.getGlobalProperty(ZONE_SNAPSHOT_REFRESH_INTERVAL_MILLIS));
     }
 
 
@@ -166,6 +186,10 @@ public class LoadBalancerStats implements IClientConfigAware {
         return activeRequestsCountTimeout;
     }
 
+    UnboxedIntProperty getResponseTimeEwmaDecaySeconds() {
+        return responseTimeEwmaDecaySeconds;
+    }
+
     /**
      * The caller o this class is tasked to call this method every so often if
      * the servers participating in the LoadBalancer changes
@@ -263,6 +287,7 @@ public class LoadBalancerStats implements IClientConfigAware {
     }
     
     public void updateZoneServerMapping(Map<String, List<Server>> map) {
+        // the zones or their servers changed, snapshots of the previous map are computed again on the next read
         upServerListZoneMap = new ConcurrentHashMap<String, List<? extends Server>>(map);
         // make sure ZoneStats object exist for available zones for monitoring purpose
         for (String zone: map.keySet()) {
@@ -299,6 +324,69 @@ public class LoadBalancerStats implements IClientConfigAware {
         return getZoneSnapshot(currentList);        
     }
     
+    /**
+     * Get the snapshots of all available zones, as used to decide which zone to avoid.
+     * <p>
+     * Computing a snapshot reads the stats of every server of the zone, so the snapshots are cached and
+     * computed again when they are older than {@link #ZONE_SNAPSHOT_REFRESH_INTERVAL_MILLIS} (0 disables
+     * the cache), or when they were computed from other zones than the current ones. Only one thread
+     * refreshes them while the others keep using the previous ones.
+     *
+     * @return an immutable map from zone to its snapshot
+     */
+    public Map<String, ZoneSnapshot> getZoneSnapshots() {
+        int refreshInterval = zoneSnapshotRefreshInterval.get();
+        Map<String, List<? extends Server>> zoneMap = upServerListZoneMap;
+        ZoneSnapshots current = zoneSnapshots;
+        if (refreshInterval <= 0) {
+            return createZoneSnapshots(zoneMap).snapshots;
+        }
+        // a computation racing with updateZoneServerMapping() may store snapshots of the previous zones,
+        // comparing the map they were computed from makes sure they are not used
+        if (current == null || current.zoneMap != zoneMap) {
+            current = createZoneSnapshots(zoneMap);
+            zoneSnapshots = current;
+            return current.snapshots;
+        }
+        if (System.currentTimeMillis() - current.timestamp >= refreshInterval
+                && zoneSnapshotsRefreshing.compareAndSet(false, true)) {
+            try {
+                current = createZoneSnapshots(zoneMap);
+                zoneSnapshots = current;
+            } finally {
+                zoneSnapshotsRefreshing.set(false);
+            }
+        }
+        return current.snapshots;
+    }
+
+    @VisibleForTesting
+    void setZoneSnapshotRefreshIntervalMillis(int millis) {
+        zoneSnapshotRefreshInterval = new UnboxedIntProperty(millis);
+        zoneSnapshots = null;
+    }
+
+    private ZoneSnapshots createZoneSnapshots(Map<String, List<? extends Server>> zoneMap) {
+        long timestamp = System.currentTimeMillis();
+        Map<String, ZoneSnapshot> map = new HashMap<String, ZoneSnapshot>();
+        for (String zone : zoneMap.keySet()) {
+            map.put(zone, getZoneSnapshot(zoneMap.get(zone.toLowerCase())));
+        }
+        return new ZoneSnapshots(zoneMap, Collections.unmodifiableMap(map), timestamp);
+    }
+
+    private static final class ZoneSnapshots {
+        final Map<String, List<? extends Server>> zoneMap;
+        final Map<String, ZoneSnapshot> snapshots;
+        final long timestamp;
+
+        ZoneSnapshots(Map<String, List<? extends Server>> zoneMap, Map<String, ZoneSnapshot> snapshots, long timestamp) {
+            this.zoneMap = zoneMap;
+            this.snapshots = snapshots;
+            this.timestamp = timestamp;
+        }
+    }
+
     /**
      * This is the core function to get zone stats. All stats are reported to avoid
      * going over the list again for a different stat.
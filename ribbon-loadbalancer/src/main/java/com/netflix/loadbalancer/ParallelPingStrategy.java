@@ -0,0 +1,252 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
+import com.netflix.client.config.Property;
+
+/**
+ * An {@link IPingStrategy} that pings the servers in parallel.
+ * <p>
+ * Each round runs at most <code>maxConcurrency</code> pings at the same time on an executor that is
+ * shared by all load balancers, and waits for at most <code>timeoutMillis</code>:
+ * <ul>
+ * <li>a server whose ping is still running when the time is up is considered dead,</li>
+ * <li>a server whose ping did not even start keeps its current status, so that a round cut short
+ * by a few slow hosts does not take down the others.</li>
+ * </ul>
+ * The results are returned to {@link BaseLoadBalancer} all at once, which publishes the new list of
+ * up servers in a single step.
+ * <p>
+ * A load balancer uses this strategy when {@link CommonClientConfigKey#NFLoadBalancerPingStrategyClassName}
+ * is set to this class, in which case <code>maxConcurrency</code> and <code>timeoutMillis</code> are
+ * taken from {@link #MAX_CONCURRENCY} and {@link #TIMEOUT_MILLIS}. The size of the shared executor is
+ * taken from {@link #POOL_SIZE} and follows changes to it.
+ */
+public class ParallelPingStrategy implements IPingStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelPingStrategy.class);
+
+    public static final IClientConfigKey<Integer> MAX_CONCURRENCY = new CommonClientConfigKey<Integer>(
+            "ParallelPingStrategy.maxConcurrency", 10) {};
+
+    public static final IClientConfigKey<Integer> TIMEOUT_MILLIS = new CommonClientConfigKey<Integer>(
+            "ParallelPingStrategy.timeoutMillis", 2000) {};
+
+    public static final IClientConfigKey<Integer> POOL_SIZE = new CommonClientConfigKey<Integer>(
+            "niws.loadbalancer.parallelPing.poolSize", 32) {};
+
+    private static final int NOT_STARTED = 0;
+    private static final int RUNNING = 1;
+    private static final int ALIVE = 2;
+    private static final int DEAD = 3;
+    private static final int SKIPPED = 4;
+
+    private static class LazyHolder {
+        static final ThreadPoolExecutor _pingExecutor;
+
+        static {
+            int poolSize = POOL_SIZE.defaultValue();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder()
+                            .setNameFormat("ParallelPingStrategy-%d")
+                            .setDaemon(true)
+                            .build());
+            executor.allowCoreThreadTimeOut(true);
+            _pingExecutor = executor;
+        }
+    }
+
+    private static final AtomicBoolean configured = new AtomicBoolean(false);
+
+    private final ExecutorService executor;
+    private final int maxConcurrency;
+    private final long timeoutMillis;
+
+    public ParallelPingStrategy() {
+        this(MAX_CONCURRENCY.defaultValue(), TIMEOUT_MILLIS.defaultValue());
+    }
+
+    public ParallelPingStrategy(IClientConfig clientConfig) {
+        this(clientConfig.getOrDefault(MAX_CONCURRENCY), clientConfig.getOrDefault(TIMEOUT_MILLIS));
+        configure(clientConfig);
+    }
+
+    public ParallelPingStrategy(int maxConcurrency, long timeoutMillis) {
+        this(null, maxConcurrency, timeoutMillis);
+    }
+
+    /**
+     * @param executor executor to run the pings on, or null to use the executor shared by all instances
+     */
+    public ParallelPingStrategy(ExecutorService executor, int maxConcurrency, long timeoutMillis) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        if (timeoutMillis < 1) {
+            throw new IllegalArgumentException("timeoutMillis must be positive: " + timeoutMillis);
+        }
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Bind the size of the shared executor to {@link #POOL_SIZE} of the given configuration. Only the
+     * first call has an effect, as the property is global.
+     */
+    public static void configure(IClientConfig clientConfig) {
+        if (clientConfig != null && configured.compareAndSet(false, true)) {
+            Property<Integer> poolSize = clientConfig.getGlobalProperty(POOL_SIZE);
+            poolSize.onChange(ParallelPingStrategy::setPoolSize);
+            setPoolSize(poolSize.getOrDefault());
+        }
+    }
+
+    static synchronized void setPoolSize(Integer poolSize) {
+        ThreadPoolExecutor executor = LazyHolder._pingExecutor;
+        if (poolSize != null && poolSize > 0 && poolSize != executor.getCorePoolSize()) {
+            logger.info("Setting the pool size of the parallel ping executor to {}", poolSize);
+            // the maximum size can never be below the core size
+            if (poolSize > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(poolSize);
+                executor.setCorePoolSize(poolSize);
+            } else {
+                executor.setCorePoolSize(poolSize);
+                executor.setMaximumPoolSize(poolSize);
+            }
+        }
+    }
+
+    public static int getPoolSize() {
+        return LazyHolder._pingExecutor.getCorePoolSize();
+    }
+
+    private ExecutorService getExecutor() {
+        return executor != null ? executor : LazyHolder._pingExecutor;
+    }
+
+    @Override
+    public boolean[] pingServers(IPing ping, Server[] servers) {
+        int numCandidates = servers.length;
+        boolean[] results = new boolean[numCandidates];
+        if (ping == null || numCandidates == 0) {
+            return results;
+        }
+
+        logger.debug("LoadBalancer:  PingTask executing [{}] servers configured", numCandidates);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        AtomicIntegerArray states = new AtomicIntegerArray(numCandidates);
+        AtomicInteger nextIndex = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(numCandidates);
+
+        // every worker pings servers one after the other until there is none left, which bounds the
+        // number of pings in flight without queueing a task per server
+        Runnable worker = () -> {
+            int i;
+            while (!Thread.currentThread().isInterrupted() && (i = nextIndex.getAndIncrement()) < numCandidates) {
+                try {
+                    if (System.nanoTime() - deadline < 0 && states.compareAndSet(i, NOT_STARTED, RUNNING)) {
+                        boolean isAlive = false;
+                        try {
+                            isAlive = ping.isAlive(servers[i]);
+                        } catch (Exception e) {
+                            logger.error("Exception while pinging Server: '{}'", servers[i], e);
+                        }
+                        states.compareAndSet(i, RUNNING, isAlive ? ALIVE : DEAD);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+
+        int numWorkers = Math.min(maxConcurrency, numCandidates);
+        Future<?>[] futures = new Future<?>[numWorkers];
+        try {
+            for (int i = 0; i < numWorkers; i++) {
+                futures[i] = getExecutor().submit(worker);
+            }
+            done.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.error("Could not schedule pings", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // collect the results before interrupting the pings that are still running, so that an
+        // interrupted ping cannot report its server as alive
+        for (int i = 0; i < numCandidates; i++) {
+            results[i] = resultOf(states, i, servers[i]);
+        }
+        for (Future<?> future : futures) {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    private static boolean resultOf(AtomicIntegerArray states, int i, Server server) {
+        while (true) {
+            switch (states.get(i)) {
+            case NOT_STARTED:
+                if (states.compareAndSet(i, NOT_STARTED, SKIPPED)) {
+                    return server.isAlive();
+                }
+                break;
+            case RUNNING:
+                if (states.compareAndSet(i, RUNNING, DEAD)) {
+                    logger.warn("Ping of Server: '{}' did not complete in time", server);
+                    return false;
+                }
+                break;
+            case ALIVE:
+                return true;
+            default:
+                return false;
+            }
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+/**
+ * A latency aware rule that samples two servers like {@link PowerOfTwoChoicesRule} and chooses the one
+ * with the lower expected cost, computed as
+ * <pre>{@code
+ * peak EWMA response time * (active requests + 1)
+ * }</pre>
+ * The peak EWMA ({@link ServerStats#getResponseTimePeakEwma()}) reacts to the first slow response of a
+ * server, so a server that degrades stops receiving most of the traffic right away instead of after the
+ * next weight calculation of {@link WeightedResponseTimeRule}.
+ * <p>
+ * Servers without any recorded response time have a cost of 0 and are preferred, so new servers are
+ * probed quickly.
+ */
+public class PeakEwmaRule extends PowerOfTwoChoicesRule {
+
+    @Override
+    protected int compare(ServerStats first, ServerStats second) {
+        return Double.compare(cost(first), cost(second));
+    }
+
+    private static double cost(ServerStats stats) {
+        return stats.getResponseTimePeakEwma() * (stats.getActiveRequestsCount() + 1);
+    }
+}
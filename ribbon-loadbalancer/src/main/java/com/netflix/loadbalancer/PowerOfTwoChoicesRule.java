@@ -0,0 +1,121 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.netflix.client.config.IClientConfig;
+
+/**
+ * A rule that picks two random servers from the reachable servers and chooses the one with fewer
+ * concurrent requests ("power of two choices"). Ties are broken by the exponentially weighted moving
+ * average of the response time.
+ * Servers that are skipped by {@link AvailabilityPredicate}, i.e. are in circuit breaker tripped state
+ * or have too many active connections, are never chosen.
+ * <p>
+ * Compared to {@link BestAvailableRule}, which looks at the statistics of every server, this rule does
+ * a constant amount of work per request regardless of the number of servers, while still keeping
+ * the load well balanced. Since every client samples different servers, it also avoids the problem of
+ * all clients sending requests to the same least loaded server.
+ * <p>
+ * When no available server is found after a few samples, this rule falls back to round robin.
+ */
+public class PowerOfTwoChoicesRule extends ClientConfigEnabledRoundRobinRule {
+
+    // number of times two servers are sampled before falling back to round robin
+    private static final int MAX_SAMPLES = 3;
+
+    private AvailabilityPredicate availabilityPredicate;
+
+    private LoadBalancerStats loadBalancerStats;
+
+    public PowerOfTwoChoicesRule() {
+        super();
+        availabilityPredicate = new AvailabilityPredicate(this);
+    }
+
+    @Override
+    public void initWithNiwsConfig(IClientConfig clientConfig) {
+        availabilityPredicate = new AvailabilityPredicate(this, clientConfig);
+    }
+
+    @Override
+    public void setLoadBalancer(ILoadBalancer lb) {
+        super.setLoadBalancer(lb);
+        if (lb instanceof AbstractLoadBalancer) {
+            loadBalancerStats = ((AbstractLoadBalancer) lb).getLoadBalancerStats();
+        }
+    }
+
+    @Override
+    public Server choose(Object key) {
+        ILoadBalancer lb = getLoadBalancer();
+        if (loadBalancerStats == null || lb == null) {
+            return super.choose(key);
+        }
+        List<Server> servers = lb.getReachableServers();
+        int serverCount = servers.size();
+        if (serverCount == 0) {
+            return null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < MAX_SAMPLES; i++) {
+            int firstIndex = random.nextInt(serverCount);
+            Server first = servers.get(firstIndex);
+            ServerStats firstStats = loadBalancerStats.getSingleServerStat(first);
+            boolean firstAvailable = !availabilityPredicate.shouldSkipServer(firstStats);
+            if (serverCount == 1) {
+                if (firstAvailable) {
+                    return first;
+                }
+                break;
+            }
+            // pick a different server than the first one
+            int secondIndex = random.nextInt(serverCount - 1);
+            if (secondIndex >= firstIndex) {
+                secondIndex++;
+            }
+            Server second = servers.get(secondIndex);
+            ServerStats secondStats = loadBalancerStats.getSingleServerStat(second);
+            boolean secondAvailable = !availabilityPredicate.shouldSkipServer(secondStats);
+            if (firstAvailable && secondAvailable) {
+                return compare(firstStats, secondStats) <= 0 ? first : second;
+            } else if (firstAvailable) {
+                return first;
+            } else if (secondAvailable) {
+                return second;
+            }
+        }
+        return super.choose(key);
+    }
+
+    /**
+     * Compare two available servers.
+     *
+     * @return a negative number if the first server should be chosen, a positive number if the second one
+     *         should be chosen and 0 if they are equally good, in which case the first one is chosen
+     */
+    protected int compare(ServerStats first, ServerStats second) {
+        int result = Integer.compare(first.getActiveRequestsCount(), second.getActiveRequestsCount());
+        if (result == 0) {
+            result = Double.compare(first.getResponseTimeEwma(), second.getResponseTimeEwma());
+        }
+        return result;
+    }
+}
@@ -36,8 +36,9 @@ public abstract class PredicateBasedRule extends ClientConfigEnabledRoundRobinRu
     public abstract AbstractServerPredicate getPredicate();
         
     /**
-     * Get a server by calling {@link AbstractServerPredicate#chooseRandomlyAfterFiltering(java.util.List, Object)}.
-     * The performance for this method is O(n) where n is number of servers to be filtered.
+     * Get a server by calling {@link AbstractServerPredicate#chooseRoundRobinAfterFiltering(java.util.List, Object)}.
+     * The performance for this method is O(n) where n is number of servers to be filtered, but the filtered
+     * list is not materialized unless the predicate overrides {@link AbstractServerPredicate#getEligibleServers(java.util.List, Object)}.
      */
     @Override
     public Server choose(Object key) {
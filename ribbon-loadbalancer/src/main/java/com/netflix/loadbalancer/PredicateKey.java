@@ -38,6 +38,15 @@ public class PredicateKey {
         this(null, server);
     }
     
+    /**
+     * Reuse this key for another server, see {@link AbstractServerPredicate.FilterBuffer}.
+     */
+    PredicateKey set(Object loadBalancerKey, Server server) {
+        this.loadBalancerKey = loadBalancerKey;
+        this.server = server;
+        return this;
+    }
+
     public final Object getLoadBalancerKey() {
         return loadBalancerKey;
     }
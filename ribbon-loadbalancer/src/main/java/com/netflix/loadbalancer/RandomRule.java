@@ -46,9 +46,9 @@ public class RandomRule extends AbstractLoadBalancerRule {
                 return null;
             }
             List<Server> upList = lb.getReachableServers();
-            List<Server> allList = lb.getAllServers();
 
-            int serverCount = allList.size();
+            // pick from the up list, which may be shorter than the list of all servers
+            int serverCount = upList.size();
             if (serverCount == 0) {
                 /*
                  * No servers. End regardless of pass, because subsequent passes
@@ -0,0 +1,89 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.netflix.client.config.UnboxedIntProperty;
+
+/**
+ * Exponentially weighted moving average of response times, where the weight of a previous average
+ * decays with the time elapsed since it was updated rather than with the number of responses.
+ * <p>
+ * In "peak" mode a response time above the current average replaces it right away, and the average
+ * also decays towards 0 while no responses are recorded. A server that suddenly becomes slow is
+ * therefore penalized with its first slow response, and once it receives no more traffic because of
+ * that, it is slowly brought back into rotation.
+ */
+final class ResponseTimeEwma {
+
+    private final boolean peak;
+    private final UnboxedIntProperty decaySeconds;
+    private final LongSupplier nanoClock;
+
+    private final AtomicLong valueBits = new AtomicLong(Double.doubleToLongBits(0.0));
+    private volatile long lastUpdateNanos;
+    private volatile boolean initialized;
+
+    ResponseTimeEwma(boolean peak, UnboxedIntProperty decaySeconds) {
+        this(peak, decaySeconds, System::nanoTime);
+    }
+
+    ResponseTimeEwma(boolean peak, UnboxedIntProperty decaySeconds, LongSupplier nanoClock) {
+        this.peak = peak;
+        this.decaySeconds = decaySeconds;
+        this.nanoClock = nanoClock;
+    }
+
+    private double weight(long elapsedNanos) {
+        double decayNanos = Math.max(1, decaySeconds.get()) * 1e9;
+        return Math.exp(-Math.max(0, elapsedNanos) / decayNanos);
+    }
+
+    void record(double millis) {
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long bits = valueBits.get();
+            double current = Double.longBitsToDouble(bits);
+            double next;
+            if (!initialized || (peak && millis > current)) {
+                next = millis;
+            } else {
+                double w = weight(now - lastUpdateNanos);
+                next = current * w + millis * (1 - w);
+            }
+            if (valueBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                lastUpdateNanos = now;
+                initialized = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the average in milliseconds, or 0 if no response time has been recorded
+     */
+    double get() {
+        double value = Double.longBitsToDouble(valueBits.get());
+        if (peak && value > 0) {
+            return value * weight(nanoClock.getAsLong() - lastUpdateNanos);
+        }
+        return value;
+    }
+}
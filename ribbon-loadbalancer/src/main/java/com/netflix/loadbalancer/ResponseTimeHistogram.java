@@ -0,0 +1,254 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Response time statistics of a single server with a fixed memory footprint.
+ * <p>
+ * Percentiles are computed on demand from a log-bucketed histogram (in the spirit of HdrHistogram)
+ * over a sliding window. Values are recorded in microseconds into 448 buckets: values below 32us
+ * are exact, larger values are kept with a relative error of at most 1/32 (~3%), up to about 35
+ * minutes. The window is split into {@value #SLOTS} slots that are reused in a ring, so the
+ * percentiles cover between 3/4 and all of the window length and never include older data.
+ * <p>
+ * In addition the mean, minimum, maximum and standard deviation over all recorded values are kept.
+ * <p>
+ * Recording never blocks and does not allocate; the counts of the slot that is being reused are
+ * cleared by the first recording thread that notices it, and a concurrent recording may be lost in
+ * that moment.
+ */
+final class ResponseTimeHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final long MAX_VALUE_MICROS = Integer.MAX_VALUE;
+
+    static final int BUCKET_COUNT = bucketIndex(MAX_VALUE_MICROS) + 1;
+
+    static final int SLOTS = 4;
+
+    private final long slotMillis;
+    private final LongSupplier clock;
+
+    private final AtomicLong[] slotEpochs = new AtomicLong[SLOTS];
+    private final AtomicIntegerArray[] slotCounts = new AtomicIntegerArray[SLOTS];
+    private final LongAdder[] slotTotals = new LongAdder[SLOTS];
+
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAdder sumOfSquares = new DoubleAdder();
+    private final AtomicLong minBits = new AtomicLong(Double.doubleToLongBits(Double.MAX_VALUE));
+    private final AtomicLong maxBits = new AtomicLong(Double.doubleToLongBits(0.0));
+
+    ResponseTimeHistogram(long windowMillis) {
+        this(windowMillis, System::currentTimeMillis);
+    }
+
+    ResponseTimeHistogram(long windowMillis, LongSupplier clock) {
+        this.slotMillis = Math.max(1, windowMillis / SLOTS);
+        this.clock = clock;
+        for (int i = 0; i < SLOTS; i++) {
+            slotEpochs[i] = new AtomicLong(-1);
+            slotCounts[i] = new AtomicIntegerArray(BUCKET_COUNT);
+            slotTotals[i] = new LongAdder();
+        }
+    }
+
+    static int bucketIndex(long micros) {
+        int exponent = Math.max(0, 63 - Long.numberOfLeadingZeros(micros) - (SUB_BUCKET_BITS - 1));
+        return exponent * SUB_BUCKET_HALF_COUNT + (int) (micros >>> exponent);
+    }
+
+    /**
+     * @return the value in the middle of the range of values kept in the bucket, in microseconds
+     */
+    static double bucketValue(int index) {
+        int exponent = Math.max(0, index / SUB_BUCKET_HALF_COUNT - 1);
+        long lowest = (long) (index - exponent * SUB_BUCKET_HALF_COUNT) << exponent;
+        return lowest + ((1L << exponent) - 1) / 2.0;
+    }
+
+    void record(double millis) {
+        if (millis < 0 || Double.isNaN(millis)) {
+            return;
+        }
+        count.increment();
+        sum.add(millis);
+        sumOfSquares.add(millis * millis);
+        updateMin(millis);
+        updateMax(millis);
+
+        long micros = Math.min(MAX_VALUE_MICROS, (long) (millis * 1000));
+        long epoch = clock.getAsLong() / slotMillis;
+        int slot = (int) (epoch % SLOTS);
+        AtomicLong slotEpoch = slotEpochs[slot];
+        long current = slotEpoch.get();
+        if (current != epoch) {
+            if (current > epoch) {
+                // this thread was descheduled for a whole window, the value is too old to count
+                return;
+            }
+            if (slotEpoch.compareAndSet(current, epoch)) {
+                clear(slot);
+            }
+        }
+        slotCounts[slot].incrementAndGet(bucketIndex(micros));
+        slotTotals[slot].add(micros);
+    }
+
+    private void clear(int slot) {
+        AtomicIntegerArray counts = slotCounts[slot];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts.get(i) != 0) {
+                counts.set(i, 0);
+            }
+        }
+        slotTotals[slot].reset();
+    }
+
+    private void updateMin(double value) {
+        long bits;
+        do {
+            bits = minBits.get();
+            if (value >= Double.longBitsToDouble(bits)) {
+                return;
+            }
+        } while (!minBits.compareAndSet(bits, Double.doubleToLongBits(value)));
+    }
+
+    private void updateMax(double value) {
+        long bits;
+        do {
+            bits = maxBits.get();
+            if (value <= Double.longBitsToDouble(bits)) {
+                return;
+            }
+        } while (!maxBits.compareAndSet(bits, Double.doubleToLongBits(value)));
+    }
+
+    /**
+     * @return the number of values recorded since this object was created
+     */
+    long getCount() {
+        return count.sum();
+    }
+
+    double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    double getMinimum() {
+        return count.sum() == 0 ? 0 : Double.longBitsToDouble(minBits.get());
+    }
+
+    double getMaximum() {
+        return Double.longBitsToDouble(maxBits.get());
+    }
+
+    double getStdDev() {
+        long n = count.sum();
+        if (n < 2) {
+            return 0;
+        }
+        double mean = sum.sum() / n;
+        double variance = sumOfSquares.sum() / n - mean * mean;
+        return variance <= 0 ? 0 : Math.sqrt(variance);
+    }
+
+    /**
+     * Take a snapshot of the values recorded in the current window.
+     */
+    Snapshot snapshot() {
+        long now = clock.getAsLong();
+        long epoch = now / slotMillis;
+        int[] counts = new int[BUCKET_COUNT];
+        long total = 0;
+        long totalMicros = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            long slotEpoch = slotEpochs[slot].get();
+            if (slotEpoch <= epoch - SLOTS || slotEpoch > epoch) {
+                continue;
+            }
+            AtomicIntegerArray slotCount = slotCounts[slot];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                int c = slotCount.get(i);
+                counts[i] += c;
+                total += c;
+            }
+            totalMicros += slotTotals[slot].sum();
+        }
+        return new Snapshot(now, counts, total, totalMicros);
+    }
+
+    static final class Snapshot {
+
+        private final long timestamp;
+        private final int[] counts;
+        private final long count;
+        private final long totalMicros;
+
+        private Snapshot(long timestamp, int[] counts, long count, long totalMicros) {
+            this.timestamp = timestamp;
+            this.counts = counts;
+            this.count = count;
+            this.totalMicros = totalMicros;
+        }
+
+        long getTimestampMillis() {
+            return timestamp;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the mean in milliseconds
+         */
+        double getMean() {
+            return count == 0 ? 0 : totalMicros / 1000.0 / count;
+        }
+
+        /**
+         * @param percent between 0 and 100
+         * @return the value in milliseconds
+         */
+        double getPercentile(double percent) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return bucketValue(i) / 1000;
+                }
+            }
+            return bucketValue(counts.length - 1) / 1000;
+        }
+    }
+}
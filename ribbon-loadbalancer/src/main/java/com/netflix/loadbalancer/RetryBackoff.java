@@ -0,0 +1,83 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
+import com.netflix.client.config.Property;
+
+/**
+ * Exponential backoff with full jitter between the retries of a request: the delay before the n-th
+ * retry is picked at random between 0 and <code>min(maxMillis, baseMillis * 2^(n-1))</code>, which
+ * spreads the retries of clients that failed at the same time.
+ * <p>
+ * Backoff is disabled when {@link #BASE_MILLIS} is 0, which is the default.
+ */
+public class RetryBackoff {
+
+    public static final IClientConfigKey<Integer> BASE_MILLIS = new CommonClientConfigKey<Integer>(
+            "RetryBackoff.baseMillis", 0) {};
+
+    public static final IClientConfigKey<Integer> MAX_MILLIS = new CommonClientConfigKey<Integer>(
+            "RetryBackoff.maxMillis", 1000) {};
+
+    private final Property<Integer> baseMillis;
+    private final Property<Integer> maxMillis;
+
+    public RetryBackoff() {
+        this(Property.of(BASE_MILLIS.defaultValue()), Property.of(MAX_MILLIS.defaultValue()));
+    }
+
+    public RetryBackoff(IClientConfig clientConfig) {
+        this(clientConfig.getDynamicProperty(BASE_MILLIS), clientConfig.getDynamicProperty(MAX_MILLIS));
+    }
+
+    @VisibleForTesting
+    RetryBackoff(Property<Integer> baseMillis, Property<Integer> maxMillis) {
+        this.baseMillis = baseMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    public boolean isEnabled() {
+        return baseMillis.getOrDefault() > 0;
+    }
+
+    /**
+     * @param retry number of the retry, starting at 1
+     * @return the delay in milliseconds to wait before making the retry
+     */
+    public long getDelayMillis(int retry) {
+        long bound = getMaxDelayMillis(retry);
+        return bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+    }
+
+    @VisibleForTesting
+    long getMaxDelayMillis(int retry) {
+        long base = baseMillis.getOrDefault();
+        if (base <= 0 || retry < 1) {
+            return 0;
+        }
+        long max = Math.max(base, maxMillis.getOrDefault());
+        int shift = Math.min(retry - 1, Long.numberOfLeadingZeros(base) - 1);
+        return Math.min(max, base << shift);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.IClientConfig;
+import com.netflix.client.config.IClientConfigKey;
+import com.netflix.client.config.Property;
+import com.netflix.servo.annotations.DataSourceType;
+import com.netflix.servo.annotations.Monitor;
+
+/**
+ * A token bucket that caps the retries of a client to a share of its successful requests.
+ * <p>
+ * The retry handlers allow a fixed number of retries per request, so when a backend slows down every
+ * request is retried and the load on it is multiplied by up to
+ * <code>(1 + MaxAutoRetries) * (1 + MaxAutoRetriesNextServer)</code>. With the budget enabled, each
+ * successful request deposits {@link #PERCENT_OF_REQUESTS} of a retry in the bucket, and
+ * {@link #MIN_RETRIES_PER_SECOND} are added over time so that a client with little traffic can still
+ * retry. A retry takes one token and is not made when the bucket is empty. The bucket holds at most
+ * {@link #MAX_BALANCE} retries, which bounds the burst of retries after a long healthy period.
+ * <p>
+ * The budget is disabled by default, in which case every retry is allowed.
+ */
+public class RetryBudget {
+
+    public static final IClientConfigKey<Boolean> ENABLED = new CommonClientConfigKey<Boolean>(
+            "RetryBudget.enabled", false) {};
+
+    public static final IClientConfigKey<Double> PERCENT_OF_REQUESTS = new CommonClientConfigKey<Double>(
+            "RetryBudget.percentOfRequests", 0.2) {};
+
+    public static final IClientConfigKey<Integer> MIN_RETRIES_PER_SECOND = new CommonClientConfigKey<Integer>(
+            "RetryBudget.minRetriesPerSecond", 10) {};
+
+    public static final IClientConfigKey<Integer> MAX_BALANCE = new CommonClientConfigKey<Integer>(
+            "RetryBudget.maxBalance", 100) {};
+
+    private static final String PREFIX = "RetryBudget_";
+
+    // the balance is kept in thousandths of a retry so that deposits of a fraction add up
+    private static final long SCALE = 1000;
+
+    private final Property<Boolean> enabled;
+    private final Property<Double> percentOfRequests;
+    private final Property<Integer> minRetriesPerSecond;
+    private final Property<Integer> maxBalance;
+
+    private final AtomicLong balance = new AtomicLong();
+    private final AtomicLong lastRefillNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong retriesAllowed = new AtomicLong();
+    private final AtomicLong retriesRejected = new AtomicLong();
+
+    public RetryBudget() {
+        this(Property.of(ENABLED.defaultValue()), Property.of(PERCENT_OF_REQUESTS.defaultValue()),
+                Property.of(MIN_RETRIES_PER_SECOND.defaultValue()), Property.of(MAX_BALANCE.defaultValue()));
+    }
+
+    public RetryBudget(IClientConfig clientConfig) {
+        this(clientConfig.getDynamicProperty(ENABLED), clientConfig.getDynamicProperty(PERCENT_OF_REQUESTS),
+                clientConfig.getDynamicProperty(MIN_RETRIES_PER_SECOND), clientConfig.getDynamicProperty(MAX_BALANCE));
+    }
+
+    @VisibleForTesting
+    RetryBudget(Property<Boolean> enabled, Property<Double> percentOfRequests,
+            Property<Integer> minRetriesPerSecond, Property<Integer> maxBalance) {
+        this.enabled = enabled;
+        this.percentOfRequests = percentOfRequests;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.maxBalance = maxBalance;
+        // start with a second worth of retries so that a new client is not starved
+        balance.set(Math.min(getMinRetriesPerSecond(), getMaxBalance()) * SCALE);
+    }
+
+    public boolean isEnabled() {
+        return enabled.getOrDefault();
+    }
+
+    /**
+     * Record a successful request, which adds its share of a retry to the budget.
+     */
+    public void onRequestSucceeded() {
+        if (isEnabled()) {
+            deposit((long) (Math.max(0, percentOfRequests.getOrDefault()) * SCALE));
+        }
+    }
+
+    /**
+     * Take a retry from the budget.
+     *
+     * @return true if the retry may be made, false if the budget is exhausted
+     */
+    public boolean tryRetry() {
+        if (!isEnabled()) {
+            return true;
+        }
+        refill(System.nanoTime());
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) {
+                retriesRejected.incrementAndGet();
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                retriesAllowed.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    @VisibleForTesting
+    void refill(long nowNanos) {
+        long last = lastRefillNanos.get();
+        long elapsedNanos = nowNanos - last;
+        if (elapsedNanos <= 0) {
+            return;
+        }
+        long amount = getMinRetriesPerSecond() * SCALE * elapsedNanos / TimeUnit.SECONDS.toNanos(1);
+        // only the thread that moves the refill time forward adds the tokens for the elapsed time
+        if (amount > 0 && lastRefillNanos.compareAndSet(last, nowNanos)) {
+            deposit(amount);
+        }
+    }
+
+    private void deposit(long amount) {
+        long max = getMaxBalance() * SCALE;
+        while (true) {
+            long current = balance.get();
+            long next = Math.min(max, current + amount);
+            if (next <= current || balance.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    private long getMinRetriesPerSecond() {
+        return Math.max(0, minRetriesPerSecond.getOrDefault());
+    }
+
+    private long getMaxBalance() {
+        return Math.max(0, maxBalance.getOrDefault());
+    }
+
+    @Monitor(name = PREFIX + "Balance", type = DataSourceType.GAUGE)
+    public double getBalance() {
+        return (double) balance.get() / SCALE;
+    }
+
+    @Monitor(name = PREFIX + "RetriesAllowed", type = DataSourceType.COUNTER)
+    public long getRetriesAllowed() {
+        return retriesAllowed.get();
+    }
+
+    @Monitor(name = PREFIX + "RetriesRejected", type = DataSourceType.COUNTER)
+    public long getRetriesRejected() {
+        return retriesRejected.get();
+    }
+}
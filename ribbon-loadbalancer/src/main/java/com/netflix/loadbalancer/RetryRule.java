@@ -17,19 +17,39 @@
 */
 package com.netflix.loadbalancer;
 
-import com.netflix.client.config.IClientConfig;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
 
 /**
  * Given that
  * {@link IRule} can be cascaded, this {@link RetryRule} class allows adding a retry logic to an existing Rule.
+ * <p>
+ * When the sub rule finds no live server, the caller is parked until the servers of the
+ * {@link BaseLoadBalancer} change or their status changes, and then tries again, until
+ * <code>maxRetryMillis</code> have passed. As some rules also skip servers for reasons that are not
+ * signalled by the load balancer, e.g. a tripped circuit breaker, the sub rule is also retried every
+ * {@value #RECHECK_INTERVAL_MILLIS} ms while waiting.
  * 
  * @author stonse
  * 
  */
 public class RetryRule extends AbstractLoadBalancerRule {
+	static final long RECHECK_INTERVAL_MILLIS = 50;
+
 	IRule subRule = new RoundRobinRule();
 	long maxRetryMillis = 500;
 
+	private final ChangeSignal changeSignal = new ChangeSignal();
+
 	public RetryRule() {
 	}
 
@@ -66,53 +86,210 @@ public class RetryRule extends AbstractLoadBalancerRule {
 	
 	@Override
 	public void setLoadBalancer(ILoadBalancer lb) {		
+		ILoadBalancer previous = getLoadBalancer();
+		if (previous != lb && previous instanceof BaseLoadBalancer) {
+			((BaseLoadBalancer) previous).removeServerListChangeListener(changeSignal);
+			((BaseLoadBalancer) previous).removeServerStatusChangeListener(changeSignal);
+		}
 		super.setLoadBalancer(lb);
 		subRule.setLoadBalancer(lb);
+		if (previous != lb && lb instanceof BaseLoadBalancer) {
+			((BaseLoadBalancer) lb).addServerListChangeListener(changeSignal);
+			((BaseLoadBalancer) lb).addServerStatusChangeListener(changeSignal);
+		}
+	}
+
+	/**
+	 * Called by the load balancer when this rule is replaced by another one, so that it stops
+	 * listening to the changes of its servers. Setting the rule again registers it again.
+	 */
+	void detach(BaseLoadBalancer lb) {
+		if (getLoadBalancer() == lb) {
+			lb.removeServerListChangeListener(changeSignal);
+			lb.removeServerStatusChangeListener(changeSignal);
+			super.setLoadBalancer(null);
+		}
 	}
 
 	/*
-	 * Loop if necessary. Note that the time CAN be exceeded depending on the
+	 * Wait if necessary. Note that the time CAN be exceeded depending on the
 	 * subRule, because we're not spawning additional threads and returning
 	 * early.
 	 */
 	public Server choose(ILoadBalancer lb, Object key) {
-		long requestTime = System.currentTimeMillis();
-		long deadline = requestTime + maxRetryMillis;
+		long deadline = System.currentTimeMillis() + maxRetryMillis;
+
+		// read before choosing so that a change in between is not missed
+		long generation = changeSignal.generation();
+		Server answer = chooseAlive(key);
+
+		while (answer == null) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				break;
+			}
+			/* wait for the servers to change and retry hoping it's transient */
+			try {
+				generation = changeSignal.await(generation, Math.min(remaining, RECHECK_INTERVAL_MILLIS));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			answer = chooseAlive(key);
+		}
+		return answer;
+	}
 
-		Server answer = null;
+	@Override
+	public Server choose(Object key) {
+		return choose(getLoadBalancer(), key);
+	}
 
-		answer = subRule.choose(key);
+	/**
+	 * Asynchronous version of {@link #choose(Object)} that does not hold a thread while waiting. The
+	 * returned {@link Observable} emits the chosen server, or completes without emitting anything if
+	 * no live server is found in <code>maxRetryMillis</code>. The retries run on the threads of
+	 * {@link LoadBalancerScheduler}.
+	 */
+	public Observable<Server> chooseAsync(final Object key) {
+		return Observable.create(new Observable.OnSubscribe<Server>() {
+			@Override
+			public void call(Subscriber<? super Server> subscriber) {
+				new AsyncChoice(key, subscriber).attempt();
+			}
+		});
+	}
 
-		if (((answer == null) || (!answer.isAlive()))
-				&& (System.currentTimeMillis() < deadline)) {
+	private Server chooseAlive(Object key) {
+		Server answer = subRule.choose(key);
+		return (answer != null && answer.isAlive()) ? answer : null;
+	}
 
-			InterruptTask task = new InterruptTask(deadline
-					- System.currentTimeMillis());
+	/**
+	 * Wakes up the callers waiting for a server whenever the servers of the load balancer change.
+	 */
+	private static class ChangeSignal implements ServerListChangeListener, ServerStatusChangeListener {
+		private final Set<Runnable> waiters = new CopyOnWriteArraySet<Runnable>();
+		private long generation;
 
-			while (!Thread.interrupted()) {
-				answer = subRule.choose(key);
+		synchronized long generation() {
+			return generation;
+		}
 
-				if (((answer == null) || (!answer.isAlive()))
-						&& (System.currentTimeMillis() < deadline)) {
-					/* pause and retry hoping it's transient */
-					Thread.yield();
-				} else {
-					break;
-				}
+		/**
+		 * Wait until the generation moves past <code>seen</code> or the timeout elapses.
+		 *
+		 * @return the current generation
+		 */
+		synchronized long await(long seen, long timeoutMillis) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + timeoutMillis;
+			long remaining = timeoutMillis;
+			while (generation == seen && remaining > 0) {
+				wait(remaining);
+				remaining = deadline - System.currentTimeMillis();
 			}
+			return generation;
+		}
 
-			task.cancel();
+		void addWaiter(Runnable waiter) {
+			waiters.add(waiter);
 		}
 
-		if ((answer == null) || (!answer.isAlive())) {
-			return null;
-		} else {
-			return answer;
+		void removeWaiter(Runnable waiter) {
+			waiters.remove(waiter);
+		}
+
+		private void signal() {
+			synchronized (this) {
+				generation++;
+				notifyAll();
+			}
+			for (Runnable waiter : waiters) {
+				waiter.run();
+			}
+		}
+
+		@Override
+		public void serverListChanged(List<Server> oldList, List<Server> newList) {
+			signal();
+		}
+
+		@Override
+		public void serverStatusChanged(Collection<Server> servers) {
+			signal();
 		}
 	}
 
-	@Override
-	public Server choose(Object key) {
-		return choose(getLoadBalancer(), key);
+	/**
+	 * State of one {@link #chooseAsync(Object)} subscription. Attempts are triggered by server changes
+	 * and by a timer, and never run concurrently.
+	 */
+	private class AsyncChoice implements Runnable {
+		private final Object key;
+		private final Subscriber<? super Server> subscriber;
+		private final long deadline;
+		private final AtomicInteger pending = new AtomicInteger();
+		private volatile boolean done;
+		private volatile ScheduledFuture<?> timer;
+
+		AsyncChoice(Object key, Subscriber<? super Server> subscriber) {
+			this.key = key;
+			this.subscriber = subscriber;
+			this.deadline = System.currentTimeMillis() + maxRetryMillis;
+			subscriber.add(Subscriptions.create(this::finish));
+		}
+
+		/**
+		 * Invoked by {@link ChangeSignal} on the thread that changed the servers, so the attempt is
+		 * handed over to the scheduler.
+		 */
+		@Override
+		public void run() {
+			LoadBalancerScheduler.schedule("RetryRule", this::attempt, 0, TimeUnit.MILLISECONDS);
+		}
+
+		void attempt() {
+			if (pending.getAndIncrement() != 0) {
+				return;
+			}
+			do {
+				if (done) {
+					return;
+				}
+				Server answer = chooseAlive(key);
+				if (answer != null) {
+					finish();
+					subscriber.onNext(answer);
+					subscriber.onCompleted();
+					return;
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					finish();
+					subscriber.onCompleted();
+					return;
+				}
+				changeSignal.addWaiter(this);
+				ScheduledFuture<?> previous = timer;
+				if (previous != null) {
+					previous.cancel(false);
+				}
+				timer = LoadBalancerScheduler.schedule("RetryRule", this::attempt,
+						Math.min(remaining, RECHECK_INTERVAL_MILLIS), TimeUnit.MILLISECONDS);
+				if (done) {
+					// unsubscribed while registering
+					finish();
+				}
+			} while (pending.decrementAndGet() != 0);
+		}
+
+		private void finish() {
+			done = true;
+			changeSignal.removeWaiter(this);
+			ScheduledFuture<?> current = timer;
+			if (current != null) {
+				current.cancel(false);
+			}
+		}
 	}
 }
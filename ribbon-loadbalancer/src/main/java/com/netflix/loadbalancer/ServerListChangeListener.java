@@ -24,4 +24,12 @@ public interface ServerListChangeListener {
      * Invoked by {@link BaseLoadBalancer} when server list is changed  
      */
     public void serverListChanged(List<Server> oldList, List<Server> newList);
+
+    /**
+     * Invoked by {@link DynamicServerListLoadBalancer} with the servers added, removed or changed by an
+     * update of its server list. Unlike {@link #serverListChanged(List, List)}, this is also invoked for
+     * servers whose attributes changed while the list stayed the same.
+     */
+    default void serverListUpdated(ServerListDelta delta) {
+    }
 }
@@ -0,0 +1,63 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The servers added, removed and changed by an update of the server list of a
+ * {@link DynamicServerListLoadBalancer}. A changed server is one that is still in the list with the
+ * same id, but whose other attributes, such as its zone, are different.
+ */
+public class ServerListDelta {
+
+    private final List<Server> added;
+    private final List<Server> removed;
+    private final List<Server> changed;
+
+    public ServerListDelta(List<Server> added, List<Server> removed, List<Server> changed) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.changed = Collections.unmodifiableList(changed);
+    }
+
+    public List<Server> getAdded() {
+        return added;
+    }
+
+    public List<Server> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return the new instances of the changed servers
+     */
+    public List<Server> getChanged() {
+        return changed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ServerListDelta [added=" + added + ", removed=" + removed + ", changed=" + changed + "]";
+    }
+}
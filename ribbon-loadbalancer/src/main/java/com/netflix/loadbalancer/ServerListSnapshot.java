@@ -0,0 +1,106 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable view of the "all" and "up" server lists of a {@link BaseLoadBalancer} at a point in time.
+ * <p>
+ * The load balancer publishes a new snapshot, with a higher version, whenever the server list or the
+ * status of a server changes. Readers such as {@link IRule}s get the current snapshot with a single volatile
+ * read and can use it without any locking or copying.
+ *
+ * @see BaseLoadBalancer#getServerListSnapshot()
+ */
+public final class ServerListSnapshot {
+
+    private static final Server[] NO_SERVERS = new Server[0];
+
+    static final ServerListSnapshot EMPTY = new ServerListSnapshot(0, NO_SERVERS, NO_SERVERS);
+
+    private final long version;
+
+    // never modified after construction
+    final Server[] allServers;
+    final Server[] upServers;
+
+    private final List<Server> allServerList;
+    private final List<Server> upServerList;
+
+    private ServerListSnapshot(long version, Server[] allServers, Server[] upServers) {
+        this(version, allServers, Collections.unmodifiableList(Arrays.asList(allServers)), upServers);
+    }
+
+    private ServerListSnapshot(long version, Server[] allServers, List<Server> allServerList, Server[] upServers) {
+        this.version = version;
+        this.allServers = allServers;
+        this.upServers = upServers;
+        this.allServerList = allServerList;
+        this.upServerList = Collections.unmodifiableList(Arrays.asList(upServers));
+    }
+
+    /**
+     * Create the next version of this snapshot. The arrays are owned by the new snapshot and must not be
+     * modified by the caller afterwards.
+     */
+    ServerListSnapshot next(Server[] allServers, Server[] upServers) {
+        return new ServerListSnapshot(version + 1, allServers, upServers);
+    }
+
+    ServerListSnapshot nextWithUpServers(Server[] upServers) {
+        return new ServerListSnapshot(version + 1, allServers, allServerList, upServers);
+    }
+
+    /**
+     * Monotonically increasing number identifying this snapshot within its load balancer. Can be used to
+     * cheaply detect that the server list has changed since the last time it was looked at.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return all known servers, in the order they were set on the load balancer
+     */
+    public List<Server> getAllServers() {
+        return allServerList;
+    }
+
+    /**
+     * @return the servers that are up and reachable
+     */
+    public List<Server> getReachableServers() {
+        return upServerList;
+    }
+
+    public int getServerCount(boolean onlyAvailable) {
+        return onlyAvailable ? upServers.length : allServers.length;
+    }
+
+    static Server[] toArray(List<Server> servers) {
+        return servers.isEmpty() ? NO_SERVERS : servers.toArray(new Server[servers.size()]);
+    }
+
+    @Override
+    public String toString() {
+        return allServerList.toString();
+    }
+}
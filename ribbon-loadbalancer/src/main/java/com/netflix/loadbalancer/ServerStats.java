@@ -25,15 +25,13 @@ import com.netflix.client.config.Property;
 import com.netflix.client.config.UnboxedIntProperty;
 import com.netflix.servo.annotations.DataSourceType;
 import com.netflix.servo.annotations.Monitor;
-import com.netflix.stats.distribution.DataDistribution;
-import com.netflix.stats.distribution.DataPublisher;
-import com.netflix.stats.distribution.Distribution;
 import com.netflix.util.MeasuredRate;
 
 import java.util.Date;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Capture various stats per Server(node) in the LoadBalancer
@@ -49,12 +47,12 @@ public class ServerStats {
     private final UnboxedIntProperty circuitTrippedTimeoutFactor;
     private final UnboxedIntProperty maxCircuitTrippedTimeout;
     private final UnboxedIntProperty activeRequestsCountTimeout;
+    private final UnboxedIntProperty responseTimeEwmaDecaySeconds;
 
-    private static final double[] PERCENTS = makePercentValues();
-    
-    private DataDistribution dataDist = new DataDistribution(1, PERCENTS); // in case
-    private DataPublisher publisher = null;
-    private final Distribution responseTimeDist = new Distribution();
+    // created by initialize(), or on first use if the stats are not initialized
+    private volatile ResponseTimeHistogram responseTimes;
+    private final ResponseTimeEwma responseTimeEwma;
+    private final ResponseTimeEwma responseTimePeakEwma;
     
     int bufferSize = DEFAULT_BUFFER_SIZE;
     int publishInterval = DEFAULT_PUBLISH_INTERVAL;
@@ -83,12 +81,16 @@ public class ServerStats {
     private AtomicLong totalCircuitBreakerBlackOutPeriod = new AtomicLong(0);
     private volatile long lastAccessedTimestamp;
     private volatile long firstConnectionTimestamp = 0;
+    private final AtomicReference<ConcurrencyLimit> concurrencyLimit = new AtomicReference<ConcurrencyLimit>();
 
     public ServerStats() {
         connectionFailureThreshold = new UnboxedIntProperty(Property.of(LoadBalancerStats.CONNECTION_FAILURE_COUNT_THRESHOLD.defaultValue()));
         circuitTrippedTimeoutFactor = new UnboxedIntProperty(LoadBalancerStats.CIRCUIT_TRIP_TIMEOUT_FACTOR_SECONDS.defaultValue());
         maxCircuitTrippedTimeout = new UnboxedIntProperty(LoadBalancerStats.CIRCUIT_TRIP_MAX_TIMEOUT_SECONDS.defaultValue());
         activeRequestsCountTimeout = new UnboxedIntProperty(LoadBalancerStats.ACTIVE_REQUESTS_COUNT_TIMEOUT.defaultValue());
+        responseTimeEwmaDecaySeconds = new UnboxedIntProperty(LoadBalancerStats.RESPONSE_TIME_EWMA_DECAY_SECONDS.defaultValue());
+        responseTimeEwma = new ResponseTimeEwma(false, responseTimeEwmaDecaySeconds);
+        responseTimePeakEwma = new ResponseTimeEwma(true, responseTimeEwmaDecaySeconds);
     }
 
     public ServerStats(LoadBalancerStats lbStats) {
@@ -96,6 +98,9 @@ public class ServerStats {
         circuitTrippedTimeoutFactor = lbStats.getCircuitTrippedTimeoutFactor();
         connectionFailureThreshold = lbStats.getConnectionFailureCountThreshold();
         activeRequestsCountTimeout = lbStats.getActiveRequestsCountTimeout();
+        responseTimeEwmaDecaySeconds = lbStats.getResponseTimeEwmaDecaySeconds();
+        responseTimeEwma = new ResponseTimeEwma(false, responseTimeEwmaDecaySeconds);
+        responseTimePeakEwma = new ResponseTimeEwma(true, responseTimeEwmaDecaySeconds);
     }
     
     /**
@@ -104,35 +109,48 @@ public class ServerStats {
     public void initialize(Server server) {
         serverFailureCounts = new MeasuredRate(failureCountSlidingWindowInterval);
         requestCountInWindow = new MeasuredRate(300000L);
-        if (publisher == null) {
-            dataDist = new DataDistribution(getBufferSize(), PERCENTS);
-            publisher = new DataPublisher(dataDist, getPublishIntervalMillis());
-            publisher.start();
-        }
+        responseTimes = new ResponseTimeHistogram(getPublishIntervalMillis());
         this.server = server;
     }
     
     public void close() {
-        if (publisher != null)
-            publisher.stop();
+        // nothing to stop, percentiles are computed when asked for
     }
 
     public Server getServer() {
         return server;
     }
 
-    private int getBufferSize() {
-        return bufferSize;
+    private ResponseTimeHistogram getResponseTimes() {
+        ResponseTimeHistogram histogram = responseTimes;
+        if (histogram == null) {
+            synchronized (this) {
+                histogram = responseTimes;
+                if (histogram == null) {
+                    histogram = new ResponseTimeHistogram(getPublishIntervalMillis());
+                    responseTimes = histogram;
+                }
+            }
+        }
+        return histogram;
     }
 
     private long getPublishIntervalMillis() {
         return publishInterval;
     }
     
+    /**
+     * @deprecated response times are kept in a histogram of fixed size, the buffer size is ignored
+     */
+    @Deprecated
     public void setBufferSize(int bufferSize) {
         this.bufferSize = bufferSize;
     }
 
+    /**
+     * Set the length of the sliding window, in milliseconds, that the response time percentiles
+     * are computed over. Takes effect when {@link #initialize(Server)} is called.
+     */
     public void setPublishInterval(int publishInterval) {
         this.publishInterval = publishInterval;
     }
@@ -159,15 +177,6 @@ public class ServerStats {
 
     }
 
-    private static double[] makePercentValues() {
-        Percent[] percents = Percent.values();
-        double[] p = new double[percents.length];
-        for (int i = 0; i < percents.length; i++) {
-            p[i] = percents[i].getValue();
-        }
-        return p;
-    }
-
     public long getFailureCountSlidingWindowInterval() {
         return failureCountSlidingWindowInterval;
     }
@@ -201,8 +210,9 @@ public class ServerStats {
      * @param msecs
      */
     public void noteResponseTime(double msecs){
-        dataDist.noteValue(msecs);
-        responseTimeDist.noteValue(msecs);
+        getResponseTimes().record(msecs);
+        responseTimeEwma.record(msecs);
+        responseTimePeakEwma.record(msecs);
     }
     
     public void incrementNumRequests(){
@@ -253,6 +263,24 @@ public class ServerStats {
         return openConnectionsCount.get();
     }
 
+    /**
+     * @return the adaptive limit of the requests in flight to the server set by {@link ConcurrencyLimiter},
+     *         or null if they are not limited
+     */
+    public ConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit.get();
+    }
+
+    /**
+     * Set the concurrency limit of the server unless it already has one.
+     *
+     * @return the concurrency limit of the server
+     */
+    public ConcurrencyLimit initConcurrencyLimit(ConcurrencyLimit limit) {
+        concurrencyLimit.compareAndSet(null, limit);
+        return concurrencyLimit.get();
+    }
+
     public long getMeasuredRequestsCount() {
         return requestCountInWindow.getCount();
     }
@@ -322,7 +350,7 @@ public class ServerStats {
     @Monitor(name = "OverallResponseTimeMillisAvg", type = DataSourceType.INFORMATIONAL,
              description = "Average total time for a request, in milliseconds")
     public double getResponseTimeAvg() {
-        return responseTimeDist.getMean();
+        return getResponseTimes().getMean();
     }
 
     /**
@@ -331,7 +359,7 @@ public class ServerStats {
     @Monitor(name = "OverallResponseTimeMillisMax", type = DataSourceType.INFORMATIONAL,
              description = "Max total time for a request, in milliseconds")
     public double getResponseTimeMax() {
-        return responseTimeDist.getMaximum();
+        return getResponseTimes().getMaximum();
     }
 
     /**
@@ -340,7 +368,7 @@ public class ServerStats {
     @Monitor(name = "OverallResponseTimeMillisMin", type = DataSourceType.INFORMATIONAL,
              description = "Min total time for a request, in milliseconds")
     public double getResponseTimeMin() {
-        return responseTimeDist.getMinimum();
+        return getResponseTimes().getMinimum();
     }
 
     /**
@@ -349,7 +377,29 @@ public class ServerStats {
     @Monitor(name = "OverallResponseTimeMillisStdDev", type = DataSourceType.INFORMATIONAL,
              description = "Standard Deviation in total time to handle a request, in milliseconds")
     public double getResponseTimeStdDev() {
-        return responseTimeDist.getStdDev();
+        return getResponseTimes().getStdDev();
+    }
+
+    /**
+     * Gets the exponentially weighted moving average of the time to handle a request, in milliseconds.
+     * Older response times lose weight with time, see
+     * {@link LoadBalancerStats#RESPONSE_TIME_EWMA_DECAY_SECONDS}.
+     */
+    @Monitor(name = "ResponseTimeMillisEwma", type = DataSourceType.GAUGE,
+             description = "Exponentially weighted moving average of the time for a request, in milliseconds")
+    public double getResponseTimeEwma() {
+        return responseTimeEwma.get();
+    }
+
+    /**
+     * Gets the peak exponentially weighted moving average of the time to handle a request, in milliseconds.
+     * Unlike {@link #getResponseTimeEwma()} it immediately goes up to a response time that is above the
+     * average, and decays towards 0 while no requests complete.
+     */
+    @Monitor(name = "ResponseTimeMillisPeakEwma", type = DataSourceType.GAUGE,
+             description = "Peak exponentially weighted moving average of the time for a request, in milliseconds")
+    public double getResponseTimePeakEwma() {
+        return responseTimePeakEwma.get();
     }
 
     /*
@@ -362,7 +412,7 @@ public class ServerStats {
     @Monitor(name = "ResponseTimePercentileNumValues", type = DataSourceType.GAUGE,
              description = "The number of data points used to compute the currently reported percentile values")
     public int getResponseTimePercentileNumValues() {
-        return dataDist.getSampleSize();
+        return (int) Math.min(Integer.MAX_VALUE, getResponseTimes().snapshot().getCount());
     }
 
     /**
@@ -371,7 +421,7 @@ public class ServerStats {
     @Monitor(name = "ResponseTimePercentileWhen", type = DataSourceType.INFORMATIONAL,
              description = "The time the percentile values were computed")
     public String getResponseTimePercentileTime() {
-        return dataDist.getTimestamp();
+        return new Date(getResponseTimes().snapshot().getTimestampMillis()).toString();
     }
 
     /**
@@ -381,7 +431,7 @@ public class ServerStats {
     @Monitor(name = "ResponseTimePercentileWhenMillis", type = DataSourceType.COUNTER,
              description = "The time the percentile values were computed in milliseconds since the epoch")
     public long getResponseTimePercentileTimeMillis() {
-        return dataDist.getTimestampMillis();
+        return getResponseTimes().snapshot().getTimestampMillis();
     }
 
     /**
@@ -391,7 +441,7 @@ public class ServerStats {
     @Monitor(name = "ResponseTimeMillisAvg", type = DataSourceType.GAUGE,
              description = "Average total time for a request in the recent time slice, in milliseconds")
     public double getResponseTimeAvgRecent() {
-        return dataDist.getMean();
+        return getResponseTimes().snapshot().getMean();
     }
     
     /**
@@ -480,7 +530,7 @@ public class ServerStats {
     }
     
     private double getResponseTimePercentile(Percent p) {
-        return dataDist.getPercentiles()[p.ordinal()];
+        return getResponseTimes().snapshot().getPercentile(p.getValue());
     }
     
     public String toString(){
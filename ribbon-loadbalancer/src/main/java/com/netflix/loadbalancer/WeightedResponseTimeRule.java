@@ -26,9 +26,11 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /** 
@@ -63,6 +65,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * <br>
  * else if (random_number between 81 &amp; 100) {send request to D;}
  * <p>
+ * The accumulated weights are kept in a primitive array together with the
+ * servers they were computed for, and the interval is found with a binary
+ * search, so picking a server is O(log n) and does not allocate.
+ * <p>
  * When there is not enough statistics gathered for the servers, this rule
  * will fall back to use {@link RoundRobinRule}. 
  * @author stonse
@@ -92,15 +98,20 @@ public class WeightedResponseTimeRule extends RoundRobinRule {
 
     private static final Logger logger = LoggerFactory.getLogger(WeightedResponseTimeRule.class);
     
-    // holds the accumulated weight from index 0 to current index
-    // for example, element at index 2 holds the sum of weight of servers from 0 to 2
-    private volatile List<Double> accumulatedWeights = new ArrayList<Double>();
-    
+    // maximum number of weighted picks that land on a server that is not alive
+    // before falling back to round robin
+    private static final int MAX_WEIGHTED_ATTEMPTS = 10;
 
-    private final Random random = new Random();
+    private volatile ServerWeights serverWeights = ServerWeights.EMPTY;
 
+    /**
+     * @deprecated the weight task is scheduled with {@link LoadBalancerScheduler}, this timer is not used
+     */
+    @Deprecated
     protected Timer serverWeightTimer = null;
 
+    private volatile ScheduledFuture<?> serverWeightFuture;
+
     protected AtomicBoolean serverWeightAssignmentInProgress = new AtomicBoolean(false);
 
     String name = "unknown";
@@ -123,102 +134,64 @@ public class WeightedResponseTimeRule extends RoundRobinRule {
     }
 
     void initialize(ILoadBalancer lb) {        
-        if (serverWeightTimer != null) {
-            serverWeightTimer.cancel();
-        }
-        serverWeightTimer = new Timer("NFLoadBalancer-serverWeightTimer-"
-                + name, true);
-        serverWeightTimer.schedule(new DynamicServerWeightTask(), 0,
-                serverWeightTaskTimerInterval);
+        cancelServerWeightTask();
+        serverWeightFuture = LoadBalancerScheduler.scheduleWithFixedDelay(
+                "NFLoadBalancer-serverWeightTimer-" + name, new DynamicServerWeightTask(), 0,
+                serverWeightTaskTimerInterval, TimeUnit.MILLISECONDS);
         // do a initial run
         ServerWeight sw = new ServerWeight();
         sw.maintainWeights();
+    }
 
-        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
-            public void run() {
-                logger
-                        .info("Stopping NFLoadBalancer-serverWeightTimer-"
-                                + name);
-                serverWeightTimer.cancel();
-            }
-        }));
+    private void cancelServerWeightTask() {
+        ScheduledFuture<?> future = serverWeightFuture;
+        if (future != null) {
+            future.cancel(false);
+            serverWeightFuture = null;
+        }
+        if (serverWeightTimer != null) {
+            serverWeightTimer.cancel();
+        }
     }
 
     public void shutdown() {
-        if (serverWeightTimer != null) {
+        if (serverWeightFuture != null || serverWeightTimer != null) {
             logger.info("Stopping NFLoadBalancer-serverWeightTimer-" + name);
-            serverWeightTimer.cancel();
+            cancelServerWeightTask();
         }
     }
 
     List<Double> getAccumulatedWeights() {
-        return Collections.unmodifiableList(accumulatedWeights);
+        double[] accumulatedWeights = serverWeights.accumulatedWeights;
+        List<Double> weights = new ArrayList<Double>(accumulatedWeights.length);
+        for (double weight : accumulatedWeights) {
+            weights.add(weight);
+        }
+        return Collections.unmodifiableList(weights);
     }
 
-    @edu.umd.cs.findbugs.annotations.SuppressWarnings(value = "RCN_REDUNDANT_NULLCHECK_OF_NULL_VALUE")
     @Override
     public Server choose(ILoadBalancer lb, Object key) {
         if (lb == null) {
             return null;
         }
-        Server server = null;
-
-        while (server == null) {
-            // get hold of the current reference in case it is changed from the other thread
-            List<Double> currentWeights = accumulatedWeights;
+        for (int attempt = 0; attempt < MAX_WEIGHTED_ATTEMPTS; attempt++) {
             if (Thread.interrupted()) {
                 return null;
             }
-            List<Server> allList = lb.getAllServers();
-
-            int serverCount = allList.size();
-
-            if (serverCount == 0) {
-                return null;
-            }
-
-            int serverIndex = 0;
-
-            // last one in the list is the sum of all weights
-            double maxTotalWeight = currentWeights.size() == 0 ? 0 : currentWeights.get(currentWeights.size() - 1); 
-            // No server has been hit yet and total weight is not initialized
-            // fallback to use round robin
-            if (maxTotalWeight < 0.001d || serverCount != currentWeights.size()) {
-                server =  super.choose(getLoadBalancer(), key);
-                if(server == null) {
-                    return server;
-                }
-            } else {
-                // generate a random weight between 0 (inclusive) to maxTotalWeight (exclusive)
-                double randomWeight = random.nextDouble() * maxTotalWeight;
-                // pick the server index based on the randomIndex
-                int n = 0;
-                for (Double d : currentWeights) {
-                    if (d >= randomWeight) {
-                        serverIndex = n;
-                        break;
-                    } else {
-                        n++;
-                    }
-                }
-
-                server = allList.get(serverIndex);
-            }
-
-            if (server == null) {
-                /* Transient. */
-                Thread.yield();
-                continue;
+            // get hold of the current reference in case it is changed from the other thread
+            ServerWeights currentWeights = serverWeights;
+            // No server has been hit yet and total weight is not initialized, or the
+            // weights are stale: fallback to use round robin
+            if (!currentWeights.isUsableFor(lb)) {
+                break;
             }
-
+            Server server = currentWeights.choose(ThreadLocalRandom.current());
             if (server.isAlive()) {
-                return (server);
+                return server;
             }
-
-            // Next.
-            server = null;
         }
-        return server;
+        return super.choose(lb, key);
     }
 
     class DynamicServerWeightTask extends TimerTask {
@@ -252,26 +225,29 @@ public class WeightedResponseTimeRule extends RoundRobinRule {
                     // no statistics, nothing to do
                     return;
                 }
+                // weights are computed for, and later only applied to, this exact list of servers
+                Server[] servers = ServerWeights.currentServers(nlb);
+                double[] responseTimes = new double[servers.length];
                 double totalResponseTime = 0;
                 // find maximal 95% response time
-                for (Server server : nlb.getAllServers()) {
+                for (int i = 0; i < servers.length; i++) {
                     // this will automatically load the stats if not in cache
-                    ServerStats ss = stats.getSingleServerStat(server);
-                    totalResponseTime += ss.getResponseTimeAvg();
+                    ServerStats ss = stats.getSingleServerStat(servers[i]);
+                    responseTimes[i] = ss.getResponseTimeAvg();
+                    totalResponseTime += responseTimes[i];
                 }
                 // weight for each server is (sum of responseTime of all servers - responseTime)
                 // so that the longer the response time, the less the weight and the less likely to be chosen
-                Double weightSoFar = 0.0;
+                double weightSoFar = 0.0;
                 
-                // create new list and hot swap the reference
-                List<Double> finalWeights = new ArrayList<Double>();
-                for (Server server : nlb.getAllServers()) {
-                    ServerStats ss = stats.getSingleServerStat(server);
-                    double weight = totalResponseTime - ss.getResponseTimeAvg();
+                // create new array and hot swap the reference
+                double[] finalWeights = new double[servers.length];
+                for (int i = 0; i < servers.length; i++) {
+                    double weight = totalResponseTime - responseTimes[i];
                     weightSoFar += weight;
-                    finalWeights.add(weightSoFar);   
+                    finalWeights[i] = weightSoFar;
                 }
-                setWeights(finalWeights);
+                setWeights(new ServerWeights(servers, finalWeights));
             } catch (Exception e) {
                 logger.error("Error calculating server weights", e);
             } finally {
@@ -281,8 +257,69 @@ public class WeightedResponseTimeRule extends RoundRobinRule {
         }
     }
 
-    void setWeights(List<Double> weights) {
-        this.accumulatedWeights = weights;
+    void setWeights(ServerWeights weights) {
+        this.serverWeights = weights;
+    }
+
+    /**
+     * Accumulated weights paired with the servers they were computed for.
+     * Element i of {@code accumulatedWeights} holds the sum of the weights of
+     * servers 0 to i, so the last element is the total weight.
+     */
+    static final class ServerWeights {
+
+        static final ServerWeights EMPTY = new ServerWeights(new Server[0], new double[0]);
+
+        final Server[] servers;
+        final double[] accumulatedWeights;
+        final double totalWeight;
+
+        ServerWeights(Server[] servers, double[] accumulatedWeights) {
+            this.servers = servers;
+            this.accumulatedWeights = accumulatedWeights;
+            this.totalWeight = accumulatedWeights.length == 0 ? 0 : accumulatedWeights[accumulatedWeights.length - 1];
+        }
+
+        static Server[] currentServers(ILoadBalancer lb) {
+            if (lb instanceof BaseLoadBalancer) {
+                // the snapshot array is immutable, no need to copy it
+                return ((BaseLoadBalancer) lb).getServerListSnapshot().allServers;
+            }
+            List<Server> servers = lb.getAllServers();
+            return servers.toArray(new Server[servers.size()]);
+        }
+
+        /**
+         * The weights can be used as long as there is some weight and the
+         * servers of the load balancer have not changed since they were computed.
+         */
+        boolean isUsableFor(ILoadBalancer lb) {
+            if (totalWeight < 0.001d) {
+                return false;
+            }
+            if (lb instanceof BaseLoadBalancer) {
+                return servers == ((BaseLoadBalancer) lb).getServerListSnapshot().allServers;
+            }
+            return servers.length == lb.getAllServers().size();
+        }
+
+        Server choose(ThreadLocalRandom random) {
+            // generate a random weight between 0 (inclusive) to totalWeight (exclusive)
+            double randomWeight = random.nextDouble() * totalWeight;
+            // find the first server whose accumulated weight is greater than randomWeight,
+            // servers with a weight of 0 are never chosen
+            int low = 0;
+            int high = accumulatedWeights.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (accumulatedWeights[mid] > randomWeight) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return servers[low];
+        }
     }
 
     @Override
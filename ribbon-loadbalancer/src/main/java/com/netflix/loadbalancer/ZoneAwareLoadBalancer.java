@@ -54,7 +54,9 @@ For each request, the steps above will be repeated. That is to say, each zone re
  */
 public class ZoneAwareLoadBalancer<T extends Server> extends DynamicServerListLoadBalancer<T> {
 
-    private ConcurrentHashMap<String, BaseLoadBalancer> balancers = new ConcurrentHashMap<String, BaseLoadBalancer>();
+    // not initialized here: the constructor of the super class already sets the server lists of the
+    // zones, and an initializer would run afterwards and drop the load balancers created for them
+    private volatile ConcurrentHashMap<String, BaseLoadBalancer> balancers;
     
     private static final Logger logger = LoggerFactory.getLogger(ZoneAwareLoadBalancer.class);
 
@@ -74,10 +76,6 @@ public class ZoneAwareLoadBalancer<T extends Server> extends DynamicServerListLo
 
     private Property<Boolean> enabled = Property.of(ENABLED.defaultValue());
 
-    void setUpServerList(List<Server> upServerList) {
-        this.upServerList = upServerList;
-    }
-
     @Deprecated
     public ZoneAwareLoadBalancer(IClientConfig clientConfig, IRule rule,
             IPing ping, ServerList<T> serverList, ServerListFilter<T> filter) {
@@ -120,9 +118,6 @@ public class ZoneAwareLoadBalancer<T extends Server> extends DynamicServerListLo
     @Override
     protected void setServerListForZones(Map<String, List<Server>> zoneServersMap) {
         super.setServerListForZones(zoneServersMap);
-        if (balancers == null) {
-            balancers = new ConcurrentHashMap<String, BaseLoadBalancer>();
-        }
         for (Map.Entry<String, List<Server>> entry: zoneServersMap.entrySet()) {
         	String zone = entry.getKey().toLowerCase();
             getLoadBalancer(zone).setServersList(entry.getValue());
@@ -130,7 +125,7 @@ public class ZoneAwareLoadBalancer<T extends Server> extends DynamicServerListLo
         // check if there is any zone that no longer has a server
         // and set the list to empty so that the zone related metrics does not
         // contain stale data
-        for (Map.Entry<String, BaseLoadBalancer> existingLBEntry: balancers.entrySet()) {
+        for (Map.Entry<String, BaseLoadBalancer> existingLBEntry: getBalancers().entrySet()) {
             if (!zoneServersMap.keySet().contains(existingLBEntry.getKey())) {
                 existingLBEntry.getValue().setServersList(Collections.emptyList());
             }
@@ -169,9 +164,24 @@ public class ZoneAwareLoadBalancer<T extends Server> extends DynamicServerListLo
         }
     }
      
+    private ConcurrentHashMap<String, BaseLoadBalancer> getBalancers() {
+        ConcurrentHashMap<String, BaseLoadBalancer> map = balancers;
+        if (map == null) {
+            synchronized (this) {
+                map = balancers;
+                if (map == null) {
+                    map = new ConcurrentHashMap<String, BaseLoadBalancer>();
+                    balancers = map;
+                }
+            }
+        }
+        return map;
+    }
+
     @VisibleForTesting
     BaseLoadBalancer getLoadBalancer(String zone) {
         zone = zone.toLowerCase();
+        ConcurrentHashMap<String, BaseLoadBalancer> balancers = getBalancers();
         BaseLoadBalancer loadBalancer = balancers.get(zone);
         if (loadBalancer == null) {
         	// We need to create rule object for load balancer for each zone
@@ -204,9 +214,10 @@ public class ZoneAwareLoadBalancer<T extends Server> extends DynamicServerListLo
     @Override
     public void setRule(IRule rule) {
         super.setRule(rule);
+        ConcurrentHashMap<String, BaseLoadBalancer> balancers = this.balancers;
         if (balancers != null) {
-            for (String zone: balancers.keySet()) {
-                balancers.get(zone).setRule(cloneRule(rule));
+            for (BaseLoadBalancer zoneLoadBalancer: balancers.values()) {
+                zoneLoadBalancer.setRule(cloneRule(rule));
             }
         }
     }
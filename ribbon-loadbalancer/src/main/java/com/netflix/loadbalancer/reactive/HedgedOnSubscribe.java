@@ -0,0 +1,203 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer.reactive;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.Observable.OnSubscribe;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.subscriptions.CompositeSubscription;
+
+/**
+ * Subscribes to a primary {@link Observable} and, if it has not emitted anything after a delay, to a hedge
+ * created at that time. The first of the two to emit an item or complete wins: the other one is
+ * unsubscribed and everything the winner emits is forwarded. An error is only forwarded once no attempt is
+ * left running, so a failed attempt does not cancel the other one.
+ * <p>
+ * The primary is subscribed on the calling thread and the hedge on the given scheduler, which runs the
+ * factory of the hedge and must therefore allow it to do I/O. The primary must not block when subscribed,
+ * as it would hold the calling thread until it returns whether or not the hedge wins.
+ *
+ * @see LoadBalancerCommand.Builder#withHedgeDelay(long, TimeUnit)
+ */
+final class HedgedOnSubscribe<T> implements OnSubscribe<T> {
+
+    private final Observable<T> primary;
+    private final Func0<Observable<T>> hedgeFactory;
+    private final Action0 onHedgeForwarded;
+    private final long delay;
+    private final TimeUnit unit;
+    private final Scheduler scheduler;
+
+    /**
+     * @param hedgeFactory creates the hedge, or returns null if there is nothing to hedge with
+     * @param onHedgeForwarded called once before the first notification of the hedge is forwarded
+     */
+    HedgedOnSubscribe(Observable<T> primary, Func0<Observable<T>> hedgeFactory, Action0 onHedgeForwarded,
+            long delay, TimeUnit unit, Scheduler scheduler) {
+        this.primary = primary;
+        this.hedgeFactory = hedgeFactory;
+        this.onHedgeForwarded = onHedgeForwarded;
+        this.delay = delay;
+        this.unit = unit;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void call(Subscriber<? super T> child) {
+        final Race race = new Race(child);
+        child.add(race.subscriptions);
+        Scheduler.Worker worker = scheduler.createWorker();
+        race.subscriptions.add(worker);
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                race.startHedge();
+            }
+        }, delay, unit);
+        race.start(primary, false);
+    }
+
+    private final class Race {
+        final CompositeSubscription subscriptions = new CompositeSubscription();
+        private final Subscriber<? super T> child;
+        private final List<Attempt> attempts = new ArrayList<Attempt>(2);
+        private Attempt winner;
+        private int running;
+        private boolean done;
+
+        Race(Subscriber<? super T> child) {
+            this.child = child;
+        }
+
+        void start(Observable<T> observable, boolean hedge) {
+            Attempt attempt = new Attempt(this, hedge);
+            synchronized (this) {
+                if (done || winner != null) {
+                    return;
+                }
+                attempts.add(attempt);
+                running++;
+            }
+            subscriptions.add(attempt);
+            observable.unsafeSubscribe(attempt);
+        }
+
+        void startHedge() {
+            synchronized (this) {
+                if (done || winner != null) {
+                    return;
+                }
+            }
+            Observable<T> hedge = hedgeFactory.call();
+            if (hedge != null) {
+                start(hedge, true);
+            }
+        }
+
+        /**
+         * @return whether the attempt may forward its notifications
+         */
+        boolean claim(Attempt attempt) {
+            List<Attempt> losers;
+            synchronized (this) {
+                if (done) {
+                    return false;
+                }
+                if (winner != null) {
+                    return winner == attempt;
+                }
+                winner = attempt;
+                losers = new ArrayList<Attempt>(attempts);
+                losers.remove(attempt);
+            }
+            for (Attempt loser : losers) {
+                loser.unsubscribe();
+            }
+            if (attempt.hedge) {
+                onHedgeForwarded.call();
+            }
+            return true;
+        }
+
+        void onCompleted(Attempt attempt) {
+            if (claim(attempt)) {
+                synchronized (this) {
+                    done = true;
+                }
+                subscriptions.unsubscribe();
+                child.onCompleted();
+            }
+        }
+
+        void onError(Attempt attempt, Throwable e) {
+            boolean hedgeForwarded;
+            synchronized (this) {
+                if (done || (winner != null && winner != attempt)) {
+                    return;
+                }
+                running--;
+                if (winner == null && running > 0) {
+                    // the other attempt may still succeed
+                    return;
+                }
+                // a hedge that won already reported it
+                hedgeForwarded = attempt.hedge && winner == null;
+                done = true;
+            }
+            subscriptions.unsubscribe();
+            if (hedgeForwarded) {
+                onHedgeForwarded.call();
+            }
+            child.onError(e);
+        }
+    }
+
+    private final class Attempt extends Subscriber<T> {
+        private final Race race;
+        private final boolean hedge;
+
+        Attempt(Race race, boolean hedge) {
+            this.race = race;
+            this.hedge = hedge;
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (race.claim(this)) {
+                race.child.onNext(t);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            race.onCompleted(this);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            race.onError(this, e);
+        }
+    }
+}
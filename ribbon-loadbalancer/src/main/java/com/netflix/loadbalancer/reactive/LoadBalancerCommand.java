@@ -22,6 +22,9 @@ import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,15 +32,21 @@ import org.slf4j.LoggerFactory;
 import rx.Observable;
 import rx.Observable.OnSubscribe;
 import rx.Observer;
+import rx.Scheduler;
 import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Func0;
 import rx.functions.Func1;
 import rx.functions.Func2;
+import rx.schedulers.Schedulers;
 
 import com.netflix.client.ClientException;
 import com.netflix.client.RetryHandler;
 import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.ConcurrencyLimiter;
 import com.netflix.loadbalancer.ILoadBalancer;
 import com.netflix.loadbalancer.LoadBalancerContext;
+import com.netflix.loadbalancer.RetryBackoff;
 import com.netflix.loadbalancer.Server;
 import com.netflix.loadbalancer.ServerStats;
 import com.netflix.loadbalancer.reactive.ExecutionListener.AbortExecutionException;
@@ -52,6 +61,7 @@ import com.netflix.servo.monitor.Stopwatch;
  * <li>Invoke the {@link #call(com.netflix.loadbalancer.Server)} method</li>
  * <li>Invoke the {@link ExecutionListener} if any</li>
  * <li>Retry on exception, controlled by {@link com.netflix.client.RetryHandler}</li>
+ * <li>Optionally hedge slow requests on a second server, see {@link Builder#withHedgeDelay(long, TimeUnit)}</li>
  * <li>Provide feedback to the {@link com.netflix.loadbalancer.LoadBalancerStats}</li>
  * </ul>
  *
@@ -60,6 +70,9 @@ import com.netflix.servo.monitor.Stopwatch;
 public class LoadBalancerCommand<T> {
     private static final Logger logger = LoggerFactory.getLogger(LoadBalancerCommand.class);
 
+    // number of times the load balancer is asked for a different server for a hedged request
+    private static final int MAX_HEDGE_SERVER_SELECTIONS = 3;
+
     public static class Builder<T> {
         private RetryHandler        retryHandler;
         private ILoadBalancer       loadBalancer;
@@ -71,6 +84,9 @@ public class LoadBalancerCommand<T> {
         private ExecutionContextListenerInvoker invoker;
         private URI                 loadBalancerURI;
         private Server              server;
+        private long                hedgeDelayMillis;
+        private boolean             percentileHedgeDelay;
+        private Scheduler           hedgeScheduler = Schedulers.io();
         
         private Builder() {}
     
@@ -132,6 +148,41 @@ public class LoadBalancerCommand<T> {
             return this;
         }
         
+        /**
+         * Send a second request to another server if the first one has not produced a result after the
+         * given delay. The first of the two to succeed is used and the other one is unsubscribed. This cuts
+         * the tail latency caused by slow servers at the cost of a few extra requests, and must only be used
+         * for idempotent operations. Not used when the operation is pinned to a server.
+         * <p>
+         * The {@link ServerOperation} must not block: the first request is subscribed on the calling thread,
+         * which does not get the result of the second request before the first call returns.
+         */
+        public Builder<T> withHedgeDelay(long delay, TimeUnit unit) {
+            this.hedgeDelayMillis = unit.toMillis(delay);
+            this.percentileHedgeDelay = false;
+            return this;
+        }
+
+        /**
+         * Like {@link #withHedgeDelay(long, TimeUnit)}, with the delay set to the 95th percentile of the
+         * response time of the first server, so that only the slowest requests are hedged. The given
+         * delay is used until the server has response times.
+         */
+        public Builder<T> withPercentileHedgeDelay(long defaultDelay, TimeUnit unit) {
+            this.hedgeDelayMillis = unit.toMillis(defaultDelay);
+            this.percentileHedgeDelay = true;
+            return this;
+        }
+
+        /**
+         * The scheduler that starts the second request of a hedged request, {@link Schedulers#io()} by default.
+         * The second request is subscribed on it.
+         */
+        public Builder<T> withHedgeScheduler(Scheduler scheduler) {
+            this.hedgeScheduler = scheduler;
+            return this;
+        }
+
         public LoadBalancerCommand<T> build() {
             if (loadBalancerContext == null && loadBalancer == null) {
                 throw new IllegalArgumentException("Either LoadBalancer or LoadBalancerContext needs to be set");
@@ -160,6 +211,9 @@ public class LoadBalancerCommand<T> {
     private final RetryHandler retryHandler;
     private volatile ExecutionInfo executionInfo;
     private final Server server;
+    private final long hedgeDelayMillis;
+    private final boolean percentileHedgeDelay;
+    private final Scheduler hedgeScheduler;
 
     private final ExecutionContextListenerInvoker<?, T> listenerInvoker;
     
@@ -170,6 +224,9 @@ public class LoadBalancerCommand<T> {
         this.retryHandler        = builder.retryHandler != null ? builder.retryHandler : loadBalancerContext.getRetryHandler();
         this.listenerInvoker     = builder.invoker;
         this.server              = builder.server;
+        this.hedgeDelayMillis    = builder.hedgeDelayMillis;
+        this.percentileHedgeDelay = builder.percentileHedgeDelay;
+        this.hedgeScheduler      = builder.hedgeScheduler;
     }
     
     /**
@@ -227,6 +284,18 @@ public class LoadBalancerCommand<T> {
             return ExecutionInfo.create(server, attemptCount, serverAttemptCount-1);
         }
 
+        ExecutionInfoContext copy() {
+            ExecutionInfoContext copy = new ExecutionInfoContext();
+            copy.set(this);
+            return copy;
+        }
+
+        void set(ExecutionInfoContext other) {
+            this.server = other.server;
+            this.serverAttemptCount = other.serverAttemptCount;
+            this.attemptCount = other.attemptCount;
+        }
+
     }
     
     private Func2<Integer, Throwable, Boolean> retryPolicy(final int maxRetrys, final boolean same) {
@@ -245,11 +314,204 @@ public class LoadBalancerCommand<T> {
                     e = e.getCause();
                 }
                 
-                return retryHandler.isRetriableException(e, same);
+                return retryHandler.isRetriableException(e, same)
+                        && loadBalancerContext.getRetryBudget().tryRetry();
             }
         };
     }
 
+    /**
+     * Retry the given {@link Observable} as allowed by {@link #retryPolicy(int, boolean)}, waiting between the
+     * attempts if the {@link RetryBackoff} of the client is enabled.
+     */
+    private Observable<T> retry(Observable<T> o, int maxRetrys, boolean same) {
+        final Func2<Integer, Throwable, Boolean> policy = retryPolicy(maxRetrys, same);
+        final RetryBackoff backoff = loadBalancerContext.getRetryBackoff();
+        if (!backoff.isEnabled()) {
+            return o.retry(policy);
+        }
+        return o.retryWhen(new Func1<Observable<? extends Throwable>, Observable<?>>() {
+            @Override
+            public Observable<?> call(Observable<? extends Throwable> errors) {
+                // called for each subscription, so the retries of different executions are counted apart
+                final AtomicInteger tryCount = new AtomicInteger();
+                return errors.concatMap(new Func1<Throwable, Observable<Long>>() {
+                    @Override
+                    public Observable<Long> call(Throwable e) {
+                        int retry = tryCount.incrementAndGet();
+                        if (!policy.call(retry, e)) {
+                            return Observable.error(e);
+                        }
+                        long delay = backoff.getDelayMillis(retry);
+                        return delay > 0 ? Observable.timer(delay, TimeUnit.MILLISECONDS) : Observable.just(0L);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Execute the operation on the given server, retrying on the same server if allowed.
+     */
+    private Observable<T> executeOnServer(Server server, final ExecutionInfoContext context,
+            final ServerOperation<T> operation, int maxRetrysSame) {
+        context.setServer(server);
+        final ServerStats stats = loadBalancerContext.getServerStats(server);
+        
+        // Called for each attempt and retry
+        Observable<T> o = Observable
+                .just(server)
+                .concatMap(new Func1<Server, Observable<T>>() {
+                    @Override
+                    public Observable<T> call(final Server server) {
+                        context.incAttemptCount();
+                        final ConcurrencyLimiter.Permit permit = loadBalancerContext.getConcurrencyLimiter().tryAcquire(stats);
+                        if (permit == null) {
+                            return Observable.error(new ClientException(ClientException.ErrorType.CLIENT_THROTTLED,
+                                    "Concurrency limit reached for client " + loadBalancerContext.getClientName()
+                                    + " or server " + server));
+                        }
+                        loadBalancerContext.noteOpenConnection(stats);
+                        
+                        if (listenerInvoker != null) {
+                            try {
+                                listenerInvoker.onStartWithServer(context.toExecutionInfo());
+                            } catch (AbortExecutionException e) {
+                                permit.cancel();
+                                if (stats != null) {
+                                    stats.decrementActiveRequestsCount();
+                                }
+                                return Observable.error(e);
+                            }
+                        }
+                        
+                        final Stopwatch tracer = loadBalancerContext.getExecuteTracer().start();
+                        final AtomicBoolean terminated = new AtomicBoolean();
+                        
+                        Observable<T> result;
+                        try {
+                            result = operation.call(server);
+                        } catch (RuntimeException e) {
+                            // nothing to subscribe to that would release the permit and the active request
+                            tracer.stop();
+                            permit.cancel();
+                            if (stats != null) {
+                                stats.decrementActiveRequestsCount();
+                            }
+                            return Observable.error(e);
+                        }
+                        return result.doOnEach(new Observer<T>() {
+                            private T entity;
+                            @Override
+                            public void onCompleted() {
+                                recordStats(tracer, stats, entity, null);
+                                // TODO: What to do if onNext or onError are never called?
+                            }
+
+                            @Override
+                            public void onError(Throwable e) {
+                                recordStats(tracer, stats, null, e);
+                                logger.debug("Got error {} when executed on server {}", e, server);
+                                if (listenerInvoker != null) {
+                                    listenerInvoker.onExceptionWithServer(e, context.toExecutionInfo());
+                                }
+                            }
+
+                            @Override
+                            public void onNext(T entity) {
+                                this.entity = entity;
+                                if (listenerInvoker != null) {
+                                    listenerInvoker.onExecutionSuccess(entity, context.toExecutionInfo());
+                                }
+                            }                            
+                            
+                            private void recordStats(Stopwatch tracer, ServerStats stats, Object entity, Throwable exception) {
+                                if (terminated.compareAndSet(false, true)) {
+                                    tracer.stop();
+                                    permit.release(tracer.getDuration(TimeUnit.NANOSECONDS),
+                                            exception != null && retryHandler.isCircuitTrippingException(exception));
+                                    loadBalancerContext.noteRequestCompletion(stats, entity, exception, tracer.getDuration(TimeUnit.MILLISECONDS), retryHandler);
+                                }
+                            }
+                        }).doOnUnsubscribe(new Action0() {
+                            @Override
+                            public void call() {
+                                // cancelled, e.g. the loser of a hedged request: only release the active request
+                                if (terminated.compareAndSet(false, true)) {
+                                    tracer.stop();
+                                    permit.cancel();
+                                    if (stats != null) {
+                                        stats.decrementActiveRequestsCount();
+                                    }
+                                }
+                            }
+                        });
+                    }
+                });
+        
+        if (maxRetrysSame > 0) 
+            o = retry(o, maxRetrysSame, true);
+        return o;
+    }
+
+    /**
+     * Race the execution on the primary server with a second one on another server, started if the primary
+     * has not produced a result after the hedge delay. The hedge counts as an attempt on the next server of
+     * the given context, which takes its state when the result of the hedge is used.
+     */
+    private Observable<T> hedge(final Server primaryServer, Observable<T> primary, final ExecutionInfoContext context,
+            final ServerOperation<T> operation, final int maxRetrysSame) {
+        long delay = hedgeDelayMillis;
+        if (percentileHedgeDelay) {
+            ServerStats stats = loadBalancerContext.getServerStats(primaryServer);
+            double percentile = stats != null ? stats.getResponseTime95thPercentile() : 0;
+            if (percentile > 0) {
+                delay = (long) Math.ceil(percentile);
+            }
+        }
+        final AtomicReference<ExecutionInfoContext> hedgeContext = new AtomicReference<ExecutionInfoContext>();
+        return Observable.create(new HedgedOnSubscribe<T>(primary, new Func0<Observable<T>>() {
+            @Override
+            public Observable<T> call() {
+                // a hedged request adds load like a retry does
+                if (!loadBalancerContext.getRetryBudget().tryRetry()) {
+                    return null;
+                }
+                Server other = selectOtherServer(primaryServer);
+                if (other == null) {
+                    return null;
+                }
+                // the primary runs with the context meanwhile, so the hedge starts with a copy
+                ExecutionInfoContext copy = context.copy();
+                hedgeContext.set(copy);
+                return executeOnServer(other, copy, operation, maxRetrysSame);
+            }
+        }, new Action0() {
+            @Override
+            public void call() {
+                context.set(hedgeContext.get());
+            }
+        }, delay, TimeUnit.MILLISECONDS, hedgeScheduler));
+    }
+
+    /**
+     * @return a server other than the given one, or null if the load balancer does not give one
+     */
+    private Server selectOtherServer(Server server) {
+        for (int i = 0; i < MAX_HEDGE_SERVER_SELECTIONS; i++) {
+            try {
+                Server other = loadBalancerContext.getServerFromLoadBalancer(loadBalancerURI, loadBalancerKey);
+                if (other != null && !other.equals(server)) {
+                    return other;
+                }
+            } catch (Exception e) {
+                logger.debug("Could not select a server for a hedged request", e);
+                return null;
+            }
+        }
+        return null;
+    }
+
     /**
      * Create an {@link Observable} that once subscribed execute network call asynchronously with a server chosen by load balancer.
      * If there are any errors that are indicated as retriable by the {@link RetryHandler}, they will be consumed internally by the
@@ -278,69 +540,16 @@ public class LoadBalancerCommand<T> {
                     @Override
                     // Called for each server being selected
                     public Observable<T> call(Server server) {
-                        context.setServer(server);
-                        final ServerStats stats = loadBalancerContext.getServerStats(server);
-                        
-                        // Called for each attempt and retry
-                        Observable<T> o = Observable
-                                .just(server)
-                                .concatMap(new Func1<Server, Observable<T>>() {
-                                    @Override
-                                    public Observable<T> call(final Server server) {
-                                        context.incAttemptCount();
-                                        loadBalancerContext.noteOpenConnection(stats);
-                                        
-                                        if (listenerInvoker != null) {
-                                            try {
-                                                listenerInvoker.onStartWithServer(context.toExecutionInfo());
-                                            } catch (AbortExecutionException e) {
-                                                return Observable.error(e);
-                                            }
-                                        }
-                                        
-                                        final Stopwatch tracer = loadBalancerContext.getExecuteTracer().start();
-                                        
-                                        return operation.call(server).doOnEach(new Observer<T>() {
-                                            private T entity;
-                                            @Override
-                                            public void onCompleted() {
-                                                recordStats(tracer, stats, entity, null);
-                                                // TODO: What to do if onNext or onError are never called?
-                                            }
-
-                                            @Override
-                                            public void onError(Throwable e) {
-                                                recordStats(tracer, stats, null, e);
-                                                logger.debug("Got error {} when executed on server {}", e, server);
-                                                if (listenerInvoker != null) {
-                                                    listenerInvoker.onExceptionWithServer(e, context.toExecutionInfo());
-                                                }
-                                            }
-
-                                            @Override
-                                            public void onNext(T entity) {
-                                                this.entity = entity;
-                                                if (listenerInvoker != null) {
-                                                    listenerInvoker.onExecutionSuccess(entity, context.toExecutionInfo());
-                                                }
-                                            }                            
-                                            
-                                            private void recordStats(Stopwatch tracer, ServerStats stats, Object entity, Throwable exception) {
-                                                tracer.stop();
-                                                loadBalancerContext.noteRequestCompletion(stats, entity, exception, tracer.getDuration(TimeUnit.MILLISECONDS), retryHandler);
-                                            }
-                                        });
-                                    }
-                                });
-                        
-                        if (maxRetrysSame > 0) 
-                            o = o.retry(retryPolicy(maxRetrysSame, true));
+                        Observable<T> o = executeOnServer(server, context, operation, maxRetrysSame);
+                        if (hedgeDelayMillis > 0 && LoadBalancerCommand.this.server == null) {
+                            o = hedge(server, o, context, operation, maxRetrysSame);
+                        }
                         return o;
                     }
                 });
             
         if (maxRetrysNext > 0 && server == null) 
-            o = o.retry(retryPolicy(maxRetrysNext, false));
+            o = retry(o, maxRetrysNext, false);
         
         return o.onErrorResumeNext(new Func1<Throwable, Observable<T>>() {
             @Override
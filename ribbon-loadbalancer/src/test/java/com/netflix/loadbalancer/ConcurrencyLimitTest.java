@@ -0,0 +1,97 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.netflix.client.config.Property;
+
+public class ConcurrencyLimitTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void testAcquireUpToLimit() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(3, 1, 10, 2.0);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertTrue(limit.isSaturated());
+        limit.release();
+        assertEquals(2, limit.getInFlight());
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    public void testLimitGrowsWhileRoundTripTimeIsStable() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(10, 1, 50, 2.0);
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(RTT, limit.getLimit(), false);
+        }
+        assertEquals(50, limit.getLimit());
+    }
+
+    @Test
+    public void testLimitDoesNotGrowWhenNotUsed() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(10, 1, 50, 2.0);
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(RTT, 1, false);
+        }
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    public void testLimitShrinksWhenRequestsQueueUp() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(40, 1, 50, 2.0);
+        limit.onSample(RTT, 40, false);
+        int before = limit.getLimit();
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(RTT * 10, limit.getLimit(), false);
+        }
+        assertTrue(limit.getLimit() < before / 2);
+        int shrunk = limit.getLimit();
+        limit.onSample(0, shrunk, true);
+        assertTrue(limit.getLimit() < shrunk || shrunk == 1);
+    }
+
+    @Test
+    public void testSaturatedServerIsSkipped() {
+        Server server = new Server("host", 80);
+        BaseLoadBalancer lb = LoadBalancerBuilder.newBuilder().buildFixedServerListLoadBalancer(Arrays.asList(server));
+        ServerStats stats = lb.getLoadBalancerStats().getSingleServerStat(server);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(Property.of(true), 1, 10, 100, 100, 1, 2.0);
+        AvailabilityPredicate predicate = new AvailabilityPredicate(new AvailabilityFilteringRule(), null);
+
+        ConcurrencyLimiter.Permit permit = limiter.tryAcquire(stats);
+        assertNotNull(permit);
+        assertTrue(predicate.shouldSkipServer(stats));
+        assertNull(limiter.tryAcquire(stats));
+        assertEquals(1, limiter.getRejected());
+        assertEquals(1, limiter.getInFlight());
+
+        permit.release(RTT, false);
+        assertFalse(predicate.shouldSkipServer(stats));
+        assertEquals(0, limiter.getInFlight());
+    }
+}
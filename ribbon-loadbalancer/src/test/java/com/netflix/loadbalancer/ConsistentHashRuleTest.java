@@ -0,0 +1,166 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class ConsistentHashRuleTest {
+
+    private static List<Server> servers(int count) {
+        List<Server> servers = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            servers.add(new Server("server" + i, 7001));
+        }
+        return servers;
+    }
+
+    // a named class, as servo tags the monitors of the stats with the class name
+    private static class CountingLoadBalancerStats extends LoadBalancerStats {
+        final AtomicInteger lookups = new AtomicInteger();
+
+        CountingLoadBalancerStats() {
+            super("CountingLoadBalancerStats");
+        }
+
+        @Override
+        public ServerStats getSingleServerStat(Server server) {
+            lookups.incrementAndGet();
+            return super.getSingleServerStat(server);
+        }
+    }
+
+    private static BaseLoadBalancer loadBalancer(IRule rule, List<Server> servers) {
+        BaseLoadBalancer lb = new BaseLoadBalancer(null, rule);
+        lb.setServersList(servers);
+        return lb;
+    }
+
+    @Test
+    public void testKeysAreSpreadAndSticky() {
+        for (boolean rendezvous : new boolean[] {false, true}) {
+            ConsistentHashRule rule = new ConsistentHashRule(100, 1.25, rendezvous);
+            BaseLoadBalancer lb = loadBalancer(rule, servers(10));
+            Map<Server, Integer> counts = Maps.newHashMap();
+            for (int i = 0; i < 2000; i++) {
+                Server server = rule.choose("key" + i);
+                assertEquals(server, rule.choose("key" + i));
+                counts.merge(server, 1, Integer::sum);
+            }
+            assertEquals(10, counts.size());
+            assertTrue(counts.toString(), Collections.min(counts.values()) > 100);
+            assertTrue(counts.toString(), Collections.max(counts.values()) < 350);
+            lb.shutdown();
+        }
+    }
+
+    @Test
+    public void testOnlyKeysOfRemovedServerMove() {
+        for (boolean rendezvous : new boolean[] {false, true}) {
+            ConsistentHashRule rule = new ConsistentHashRule(100, 1.25, rendezvous);
+            List<Server> servers = servers(10);
+            BaseLoadBalancer lb = loadBalancer(rule, servers);
+            Map<String, Server> before = Maps.newHashMap();
+            for (int i = 0; i < 1000; i++) {
+                before.put("key" + i, rule.choose("key" + i));
+            }
+            Server removed = servers.get(3);
+            List<Server> remaining = Lists.newArrayList(servers);
+            remaining.remove(removed);
+            lb.setServersList(remaining);
+            for (Map.Entry<String, Server> entry : before.entrySet()) {
+                Server after = rule.choose(entry.getKey());
+                if (entry.getValue().equals(removed)) {
+                    assertNotEquals(removed, after);
+                } else {
+                    assertEquals(entry.getValue(), after);
+                }
+            }
+            lb.shutdown();
+        }
+    }
+
+    @Test
+    public void testBoundedLoad() {
+        for (boolean rendezvous : new boolean[] {false, true}) {
+            ConsistentHashRule rule = new ConsistentHashRule(100, 1.25, rendezvous);
+            BaseLoadBalancer lb = loadBalancer(rule, servers(4));
+            Server hot = rule.choose("hot");
+            ServerStats stats = lb.getLoadBalancerStats().getSingleServerStat(hot);
+            stats.incrementActiveRequestsCount();
+            // 1 active request out of 1, the bound is ceil(1.25 * 2 / 4) = 1
+            assertNotEquals(hot, rule.choose("hot"));
+
+            ConsistentHashRule unbounded = new ConsistentHashRule(100, 0, rendezvous);
+            BaseLoadBalancer other = loadBalancer(unbounded, servers(4));
+            other.getLoadBalancerStats().getSingleServerStat(hot).incrementActiveRequestsCount();
+            assertEquals(hot, unbounded.choose("hot"));
+            lb.shutdown();
+            other.shutdown();
+        }
+    }
+
+    @Test
+    public void testRingLooksAtRejectedServersOnce() {
+        ConsistentHashRule rule = new ConsistentHashRule(100, 1.25, false);
+        List<Server> servers = servers(4);
+        BaseLoadBalancer lb = loadBalancer(rule, servers);
+        CountingLoadBalancerStats stats = new CountingLoadBalancerStats();
+        AtomicInteger lookups = stats.lookups;
+        lb.setLoadBalancerStats(stats);
+        Server open = servers.get(2);
+        for (Server server : servers) {
+            if (server != open) {
+                for (int i = 0; i < 3; i++) {
+                    lb.getLoadBalancerStats().getSingleServerStat(server).incrementSuccessiveConnectionFailureCount();
+                }
+            }
+        }
+        for (int i = 0; i < 100; i++) {
+            lookups.set(0);
+            assertEquals(open, rule.choose("key" + i));
+            assertTrue(lookups.toString(), lookups.get() <= servers.size());
+        }
+
+        lb.getLoadBalancerStats().getSingleServerStat(open).incrementSuccessiveConnectionFailureCount();
+        lb.getLoadBalancerStats().getSingleServerStat(open).incrementSuccessiveConnectionFailureCount();
+        lb.getLoadBalancerStats().getSingleServerStat(open).incrementSuccessiveConnectionFailureCount();
+        lookups.set(0);
+        // every server is rejected, the key keeps its affinity
+        assertEquals(rule.choose("key"), rule.choose("key"));
+        assertTrue(lookups.toString(), lookups.get() <= 2 * servers.size());
+        lb.shutdown();
+    }
+
+    @Test
+    public void testNoKey() {
+        ConsistentHashRule rule = new ConsistentHashRule();
+        BaseLoadBalancer lb = loadBalancer(rule, servers(3));
+        assertNotEquals(rule.choose(null), rule.choose(null));
+        lb.shutdown();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.configuration.Configuration;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.netflix.client.config.DefaultClientConfigImpl;
+import com.netflix.config.ConfigurationManager;
+
+public class DeterministicSubsetFilterTest {
+
+    private static List<Server> servers(int count) {
+        List<Server> servers = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            servers.add(new Server("server" + i, 7001));
+        }
+        return servers;
+    }
+
+    @Test
+    public void testSubsetsAreEvenlySpread() {
+        List<Server> servers = servers(100);
+        int clients = 30;
+        Map<Server, Integer> usage = Maps.newHashMap();
+        for (int i = 0; i < clients; i++) {
+            List<Server> subset = DeterministicSubsetFilter.subset(servers, i, clients, 5);
+            assertEquals(5, subset.size());
+            assertEquals(5, Sets.newHashSet(subset).size());
+            for (Server server : subset) {
+                usage.merge(server, 1, Integer::sum);
+            }
+        }
+        assertEquals(servers.size(), usage.size());
+        int min = Collections.min(usage.values());
+        int max = Collections.max(usage.values());
+        assertTrue("usage between " + min + " and " + max, max - min <= 1);
+    }
+
+    @Test
+    public void testSubsetIsStable() {
+        List<Server> servers = servers(50);
+        List<Server> subset = DeterministicSubsetFilter.subset(servers, 3, 10, 5);
+        List<Server> shuffled = Lists.newArrayList(servers);
+        Collections.shuffle(shuffled);
+        assertEquals(Sets.newHashSet(subset), Sets.newHashSet(DeterministicSubsetFilter.subset(shuffled, 3, 10, 5)));
+
+        // adding or removing a server moves few members
+        List<Server> more = servers(51);
+        List<Server> less = servers(49);
+        for (int i = 0; i < 10; i++) {
+            Set<Server> before = Sets.newHashSet(DeterministicSubsetFilter.subset(servers, i, 10, 5));
+            assertTrue(Sets.difference(before, Sets.newHashSet(DeterministicSubsetFilter.subset(more, i, 10, 5))).size() <= 2);
+            assertTrue(Sets.difference(before, Sets.newHashSet(DeterministicSubsetFilter.subset(less, i, 10, 5))).size() <= 2);
+        }
+    }
+
+    @Test
+    public void testSubsetsCoverAllServers() {
+        List<Server> servers = servers(20);
+        Set<Server> used = Sets.newHashSet();
+        for (int i = 0; i < 8; i++) {
+            List<Server> subset = DeterministicSubsetFilter.subset(servers, i, 8, 1);
+            assertEquals(3, subset.size());
+            used.addAll(subset);
+        }
+        assertEquals(Sets.newHashSet(servers), used);
+    }
+
+    @Test
+    public void testUsesAllServersUntilConfigured() {
+        DefaultClientConfigImpl clientConfig = new DefaultClientConfigImpl();
+        clientConfig.loadProperties("DeterministicSubsetFilterTest.unconfigured");
+        DeterministicSubsetFilter<Server> filter = new DeterministicSubsetFilter<Server>(clientConfig);
+        filter.setLoadBalancerStats(new LoadBalancerStats("DeterministicSubsetFilterTest"));
+        assertEquals(100, filter.getFilteredListOfServers(servers(100)).size());
+    }
+
+    @Test
+    public void testFilter() {
+        Configuration config = ConfigurationManager.getConfigInstance();
+        config.setProperty("DeterministicSubsetFilterTest.ribbon.DeterministicSubsetFilter.instanceIndex", "2");
+        config.setProperty("DeterministicSubsetFilterTest.ribbon.DeterministicSubsetFilter.instanceCount", "10");
+        try {
+            DefaultClientConfigImpl clientConfig = new DefaultClientConfigImpl();
+            clientConfig.loadProperties("DeterministicSubsetFilterTest");
+            DeterministicSubsetFilter<Server> filter = new DeterministicSubsetFilter<Server>(clientConfig);
+            filter.setLoadBalancerStats(new LoadBalancerStats("DeterministicSubsetFilterTest"));
+            List<Server> servers = servers(100);
+            List<Server> filtered = filter.getFilteredListOfServers(servers);
+            assertEquals(20, filtered.size());
+            assertEquals(DeterministicSubsetFilter.subset(servers, 2, 10, 20), filtered);
+        } finally {
+            config.clearProperty("DeterministicSubsetFilterTest.ribbon.DeterministicSubsetFilter.instanceIndex");
+            config.clearProperty("DeterministicSubsetFilterTest.ribbon.DeterministicSubsetFilter.instanceCount");
+        }
+    }
+}
@@ -19,10 +19,13 @@ package com.netflix.loadbalancer;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -87,5 +90,142 @@ public class DynamicServerListLoadBalancerTest {
         assertEquals(count, MyServerList.counter.get());
         
     }
-}
 
+    static class NoOpServerListUpdater implements ServerListUpdater {
+        @Override
+        public void start(UpdateAction updateAction) {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public String getLastUpdate() {
+            return null;
+        }
+
+        @Override
+        public long getDurationSinceLastUpdateMs() {
+            return 0;
+        }
+
+        @Override
+        public int getNumberMissedCycles() {
+            return 0;
+        }
+
+        @Override
+        public int getCoreThreads() {
+            return 0;
+        }
+    }
+
+    private static Server server(String id, String zone) {
+        Server server = new Server(id);
+        server.setZone(zone);
+        return server;
+    }
+
+    @Test
+    public void testServerListDelta() {
+        final AtomicReference<List<Server>> list = new AtomicReference<List<Server>>(
+                Lists.newArrayList(server("a:80", "us-east-1a"), server("b:80", "us-east-1b")));
+        ServerList<Server> serverList = new ServerList<Server>() {
+            @Override
+            public List<Server> getInitialListOfServers() {
+                return list.get();
+            }
+
+            @Override
+            public List<Server> getUpdatedListOfServers() {
+                return list.get();
+            }
+        };
+        DefaultClientConfigImpl config = DefaultClientConfigImpl.getClientConfigWithDefaultValues("delta");
+        DynamicServerListLoadBalancer<Server> lb = new DynamicServerListLoadBalancer<Server>(config,
+                new RoundRobinRule(), new DummyPing(), serverList, null, new NoOpServerListUpdater());
+        final List<ServerListDelta> deltas = new CopyOnWriteArrayList<ServerListDelta>();
+        final AtomicInteger listChanges = new AtomicInteger();
+        lb.addServerListChangeListener(new ServerListChangeListener() {
+            @Override
+            public void serverListChanged(List<Server> oldList, List<Server> newList) {
+                listChanges.incrementAndGet();
+            }
+
+            @Override
+            public void serverListUpdated(ServerListDelta delta) {
+                deltas.add(delta);
+            }
+        });
+        List<Server> initial = lb.getAllServers();
+        assertEquals(list.get(), initial);
+
+        // the same instances in another order change nothing
+        list.set(Lists.newArrayList(initial.get(1), initial.get(0)));
+        lb.updateListOfServers();
+        assertTrue(deltas.isEmpty());
+        assertEquals(0, listChanges.get());
+        assertSame(initial.get(0), lb.getAllServers().get(0));
+
+        Server movedA = server("a:80", "us-east-1c");
+        Server c = server("c:80", "us-east-1a");
+        list.set(Lists.newArrayList(movedA, c));
+        lb.updateListOfServers();
+        assertEquals(1, deltas.size());
+        ServerListDelta delta = deltas.get(0);
+        assertEquals(Arrays.asList(c), delta.getAdded());
+        assertEquals(Arrays.asList(initial.get(1)), delta.getRemoved());
+        assertSame(movedA, delta.getChanged().get(0));
+        assertEquals(1, listChanges.get());
+        assertSame(movedA, lb.getAllServers().get(0));
+        assertEquals(Arrays.asList(movedA), lb.getLoadBalancerStats().upServerListZoneMap.get("us-east-1c"));
+
+        // only the zone of a server changes: the list is the same, but the new instance is used
+        Server movedC = server("c:80", "us-east-1b");
+        list.set(Lists.newArrayList(movedA, movedC));
+        lb.updateListOfServers();
+        assertEquals(2, deltas.size());
+        assertEquals(Arrays.asList(movedC), deltas.get(1).getChanged());
+        assertEquals(1, listChanges.get());
+        assertSame(movedC, lb.getAllServers().get(1));
+
+        // another instance may carry other attributes, so it is used even if its id and zone are the same
+        Server newA = server("a:80", "us-east-1c");
+        list.set(Lists.newArrayList(newA, movedC));
+        lb.updateListOfServers();
+        assertEquals(3, deltas.size());
+        assertEquals(Arrays.asList(newA), deltas.get(2).getChanged());
+        assertSame(newA, lb.getAllServers().get(0));
+        lb.shutdown();
+    }
+
+    @Test
+    public void testRefreshMarksServersUpWithoutPing() {
+        final List<Server> list = Lists.newArrayList(server("a:80", "us-east-1a"), server("b:80", "us-east-1a"));
+        ServerList<Server> serverList = new ServerList<Server>() {
+            @Override
+            public List<Server> getInitialListOfServers() {
+                return list;
+            }
+
+            @Override
+            public List<Server> getUpdatedListOfServers() {
+                return list;
+            }
+        };
+        DefaultClientConfigImpl config = DefaultClientConfigImpl.getClientConfigWithDefaultValues("markDown");
+        DynamicServerListLoadBalancer<Server> lb = new DynamicServerListLoadBalancer<Server>(config,
+                new RoundRobinRule(), new DummyPing(), serverList, null, new NoOpServerListUpdater());
+        lb.markServerDown("a:80");
+        assertEquals(Arrays.asList(list.get(1)), lb.getReachableServers());
+
+        // nothing pings the servers, so a refresh brings the server back as it did before
+        for (int i = 0; i < 3; i++) {
+            lb.updateListOfServers();
+        }
+        assertEquals(list, lb.getReachableServers());
+        assertTrue(list.get(0).isAlive());
+        lb.shutdown();
+    }
+}
@@ -1,9 +1,15 @@
 package com.netflix.loadbalancer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 
@@ -12,7 +18,12 @@ import rx.Observable.OnSubscribe;
 import rx.Subscriber;
 
 import com.google.common.collect.Lists;
+import com.netflix.client.ClientException;
 import com.netflix.client.RetryHandler;
+import com.netflix.client.config.Property;
+import com.netflix.loadbalancer.reactive.ExecutionContext;
+import com.netflix.loadbalancer.reactive.ExecutionInfo;
+import com.netflix.loadbalancer.reactive.ExecutionListener;
 import com.netflix.loadbalancer.reactive.LoadBalancerCommand;
 import com.netflix.loadbalancer.reactive.ServerOperation;
 
@@ -124,4 +135,293 @@ public class LoadBalancerCommandTest {
         assertEquals("3", result); // server2 is picked first
         assertEquals(1, loadBalancer.getLoadBalancerStats().getSingleServerStat(server3).getTotalRequestsCount());
     }
+
+    /**
+     * An operation whose first call takes the given time to complete, with an error if failFirst is set.
+     */
+    static class SlowFirstCallOperation implements ServerOperation<String> {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicReference<Server> firstServer = new AtomicReference<Server>();
+        final long firstCallMillis;
+        final boolean failFirst;
+        final long otherCallMillis;
+
+        SlowFirstCallOperation(long firstCallMillis, boolean failFirst, long otherCallMillis) {
+            this.firstCallMillis = firstCallMillis;
+            this.failFirst = failFirst;
+            this.otherCallMillis = otherCallMillis;
+        }
+
+        @Override
+        public Observable<String> call(final Server server) {
+            if (calls.incrementAndGet() == 1) {
+                firstServer.set(server);
+                Observable<String> first = Observable.timer(firstCallMillis, TimeUnit.MILLISECONDS).map(i -> server.getHost());
+                return failFirst ? first.flatMap(host -> Observable.<String>error(new IllegalStateException(host))) : first;
+            }
+            return Observable.timer(otherCallMillis, TimeUnit.MILLISECONDS).map(i -> server.getHost());
+        }
+    }
+
+    @Test
+    public void testHedgedRequest() {
+        BaseLoadBalancer loadBalancer = LoadBalancerBuilder.newBuilder().buildFixedServerListLoadBalancer(list);
+        LoadBalancerCommand<String> command = LoadBalancerCommand.<String>builder()
+                .withLoadBalancer(loadBalancer)
+                .withHedgeDelay(50, TimeUnit.MILLISECONDS)
+                .build();
+        SlowFirstCallOperation operation = new SlowFirstCallOperation(5000, false, 20);
+
+        long start = System.nanoTime();
+        String result = command.submit(operation).toBlocking().single();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis < 2000);
+        assertEquals(2, operation.calls.get());
+        assertNotEquals(operation.firstServer.get().getHost(), result);
+        // the slow request was cancelled and does not count as active anymore
+        assertEquals(0, loadBalancer.getLoadBalancerStats().getSingleServerStat(operation.firstServer.get()).getActiveRequestsCount());
+    }
+
+    @Test
+    public void testNoHedgeForFastRequest() {
+        BaseLoadBalancer loadBalancer = LoadBalancerBuilder.newBuilder().buildFixedServerListLoadBalancer(list);
+        LoadBalancerCommand<String> command = LoadBalancerCommand.<String>builder()
+                .withLoadBalancer(loadBalancer)
+                .withHedgeDelay(1000, TimeUnit.MILLISECONDS)
+                .build();
+        SlowFirstCallOperation operation = new SlowFirstCallOperation(10, false, 10);
+        String result = command.submit(operation).toBlocking().single();
+        assertEquals(operation.firstServer.get().getHost(), result);
+        assertEquals(1, operation.calls.get());
+    }
+
+    @Test
+    public void testHedgeSucceedsAfterPrimaryFails() {
+        BaseLoadBalancer loadBalancer = LoadBalancerBuilder.newBuilder().buildFixedServerListLoadBalancer(list);
+        LoadBalancerCommand<String> command = LoadBalancerCommand.<String>builder()
+                .withLoadBalancer(loadBalancer)
+                .withHedgeDelay(10, TimeUnit.MILLISECONDS)
+                .build();
+        // the primary fails after 200ms, while the hedge started after 10ms is still running
+        SlowFirstCallOperation operation = new SlowFirstCallOperation(200, true, 500);
+        String result = command.submit(operation).toBlocking().single();
+        assertNotEquals(operation.firstServer.get().getHost(), result);
+        assertEquals(2, operation.calls.get());
+    }
+
+    @Test
+    public void testHedgeCutsLatencyOfNonBlockingPrimary() {
+        BaseLoadBalancer loadBalancer = LoadBalancerBuilder.newBuilder().buildFixedServerListLoadBalancer(list);
+        SlowFirstCallOperation unhedged = new SlowFirstCallOperation(500, false, 20);
+        long start = System.nanoTime();
+        LoadBalancerCommand.<String>builder()
+                .withLoadBalancer(loadBalancer)
+                .build()
+                .submit(unhedged).toBlocking().single();
+        long unhedgedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        final AtomicReference<String> hedgeThread = new AtomicReference<String>();
+        final SlowFirstCallOperation hedged = new SlowFirstCallOperation(500, false, 20);
+        LoadBalancerCommand<String> command = LoadBalancerCommand.<String>builder()
+                .withLoadBalancer(loadBalancer)
+                .withHedgeDelay(50, TimeUnit.MILLISECONDS)
+                .build();
+        start = System.nanoTime();
+        String result = command.submit(new ServerOperation<String>() {
+            @Override
+            public Observable<String> call(Server server) {
+                if (hedged.calls.get() > 0) {
+                    hedgeThread.set(Thread.currentThread().getName());
+                }
+                return hedged.call(server);
+            }
+        }).toBlocking().single();
+        long hedgedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("took " + hedgedMillis + "ms, " + unhedgedMillis + "ms without hedging", hedgedMillis < unhedgedMillis / 2);
+        assertNotEquals(hedged.firstServer.get().getHost(), result);
+        // the hedge is started on the I/O scheduler, not on a computation thread
+        assertTrue(hedgeThread.get(), hedgeThread.get().startsWith("RxCachedThreadScheduler"));
+    }
+
+    @Test
+    public void testHedgeIsReportedAsNextServerAttempt() {
+        final List<ExecutionInfo> started = new CopyOnWriteArrayList<ExecutionInfo>();
+        final AtomicReference<ExecutionInfo> succeeded = new AtomicReference<ExecutionInfo>();
+        ExecutionListener<Object, String> listener = new ExecutionListener<Object, String>() {
+            @Override
+            public void onExecutionStart(ExecutionContext<Object> context) {
+            }
+
+            @Override
+            public void onStartWithServer(ExecutionContext<Object> context, ExecutionInfo info) {
+                started.add(info);
+            }
+
+            @Override
+            public void onExceptionWithServer(ExecutionContext<Object> context, Throwable exception, ExecutionInfo info) {
+            }
+
+            @Override
+            public void onExecutionSuccess(ExecutionContext<Object> context, String response, ExecutionInfo info) {
+                succeeded.set(info);
+            }
+
+            @Override
+            public void onExecutionFailed(ExecutionContext<Object> context, Throwable finalException, ExecutionInfo info) {
+            }
+        };
+        BaseLoadBalancer loadBalancer = LoadBalancerBuilder.newBuilder().buildFixedServerListLoadBalancer(list);
+        LoadBalancerCommand<String> command = LoadBalancerCommand.<String>builder()
+                .withLoadBalancer(loadBalancer)
+                .withHedgeDelay(50, TimeUnit.MILLISECONDS)
+                .withListeners(Lists.newArrayList(listener))
+                .withExecutionContext(new ExecutionContext<Object>(null, null, null, null))
+                .build();
+        SlowFirstCallOperation operation = new SlowFirstCallOperation(5000, false, 20);
+
+        String result = command.submit(operation).toBlocking().single();
+        assertEquals(2, started.size());
+        assertEquals(0, started.get(0).getNumberOfPastServersAttempted());
+        assertEquals(1, started.get(1).getNumberOfPastServersAttempted());
+        assertEquals(0, started.get(1).getNumberOfPastAttemptsOnServer());
+        assertEquals(result, succeeded.get().getServer().getHost());
+        assertEquals(1, succeeded.get().getNumberOfPastServersAttempted());
+    }
+
+    static RetryHandler retryNextServer(final int maxRetriesNextServer) {
+        return new RetryHandler() {
+            @Override
+            public boolean isRetriableException(Throwable e, boolean sameServer) {
+                return (e instanceof IllegalArgumentException);
+            }
+            @Override
+            public boolean isCircuitTrippingException(Throwable e) {
+                return false;
+            }
+            @Override
+            public int getMaxRetriesOnSameServer() {
+                return 0;
+            }
+            @Override
+            public int getMaxRetriesOnNextServer() {
+                return maxRetriesNextServer;
+            }
+        };
+    }
+
+    static class FailingOperation implements ServerOperation<String> {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Observable<String> call(Server server) {
+            calls.incrementAndGet();
+            return Observable.error(new IllegalArgumentException());
+        }
+    }
+
+    @Test
+    public void testRetryBudgetLimitsRetries() {
+        BaseLoadBalancer loadBalancer = LoadBalancerBuilder.newBuilder().buildFixedServerListLoadBalancer(list);
+        LoadBalancerContext context = new LoadBalancerContext(loadBalancer);
+        // two retries in the bucket, and nothing added by requests or over time
+        RetryBudget budget = new RetryBudget(Property.of(true), Property.of(0.0), Property.of(2), Property.of(2));
+        context.setRetryBudget(budget);
+        LoadBalancerCommand<String> command = LoadBalancerCommand.<String>builder()
+                .withLoadBalancerContext(context)
+                .withRetryHandler(retryNextServer(5))
+                .build();
+        FailingOperation operation = new FailingOperation();
+        try {
+            command.submit(operation).toBlocking().single();
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(3, operation.calls.get());
+        assertEquals(2, budget.getRetriesAllowed());
+        assertEquals(1, budget.getRetriesRejected());
+    }
+
+    @Test
+    public void testRetryBackoff() {
+        BaseLoadBalancer loadBalancer = LoadBalancerBuilder.newBuilder().buildFixedServerListLoadBalancer(list);
+        LoadBalancerContext context = new LoadBalancerContext(loadBalancer);
+        context.setRetryBackoff(new RetryBackoff(Property.of(100), Property.of(100)) {
+            @Override
+            public long getDelayMillis(int retry) {
+                return 100;
+            }
+        });
+        LoadBalancerCommand<String> command = LoadBalancerCommand.<String>builder()
+                .withLoadBalancerContext(context)
+                .withRetryHandler(retryNextServer(2))
+                .build();
+        FailingOperation operation = new FailingOperation();
+        long start = System.nanoTime();
+        try {
+            command.submit(operation).toBlocking().single();
+            fail("ClientException expected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof ClientException);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(3, operation.calls.get());
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis >= 200);
+    }
+
+    @Test
+    public void testConcurrencyLimitShedsRequests() {
+        BaseLoadBalancer loadBalancer = LoadBalancerBuilder.newBuilder().buildFixedServerListLoadBalancer(list);
+        LoadBalancerContext context = new LoadBalancerContext(loadBalancer);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(Property.of(true), 1, 10, 1, 10, 1, 2.0);
+        context.setConcurrencyLimiter(limiter);
+        LoadBalancerCommand<String> command = LoadBalancerCommand.<String>builder()
+                .withLoadBalancerContext(context)
+                .withRetryHandler(retryNextServer(0))
+                .build();
+        SlowFirstCallOperation operation = new SlowFirstCallOperation(500, false, 0);
+        Observable<String> first = command.submit(operation).cache();
+        first.subscribe();
+        try {
+            command.submit(operation).toBlocking().single();
+            fail("ClientException expected");
+        } catch (RuntimeException e) {
+            assertEquals(ClientException.ErrorType.CLIENT_THROTTLED, ((ClientException) e.getCause()).getErrorType());
+        }
+        assertEquals(1, operation.calls.get());
+        assertEquals(operation.firstServer.get().getHost(), first.toBlocking().single());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testPermitIsReleasedWhenOperationThrows() {
+        BaseLoadBalancer loadBalancer = LoadBalancerBuilder.newBuilder().buildFixedServerListLoadBalancer(list);
+        LoadBalancerContext context = new LoadBalancerContext(loadBalancer);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(Property.of(true), 1, 10, 1, 10, 1, 2.0);
+        context.setConcurrencyLimiter(limiter);
+        LoadBalancerCommand<String> command = LoadBalancerCommand.<String>builder()
+                .withLoadBalancerContext(context)
+                .withRetryHandler(retryNextServer(0))
+                .build();
+        final AtomicReference<Server> called = new AtomicReference<Server>();
+        try {
+            command.submit(new ServerOperation<String>() {
+                @Override
+                public Observable<String> call(Server server) {
+                    called.set(server);
+                    throw new IllegalStateException("failed to create the request");
+                }
+            }).toBlocking().single();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException e) {
+        }
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, loadBalancer.getLoadBalancerStats().getSingleServerStat(called.get()).getActiveRequestsCount());
+        // the client limit of 1 is free for the next request
+        SlowFirstCallOperation next = new SlowFirstCallOperation(0, false, 0);
+        command.submit(next).toBlocking().single();
+        assertEquals(1, next.calls.get());
+    }
 }
@@ -18,12 +18,15 @@
 package com.netflix.loadbalancer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.net.URI;
 import java.net.URLEncoder;
 
 import org.junit.Test;
 
+import com.netflix.client.config.DefaultClientConfigImpl;
 import com.netflix.client.config.IClientConfig;
 
 public class LoadBalancerContextTest {
@@ -137,6 +140,30 @@ public class LoadBalancerContextTest {
         URI newURI = context.reconstructURIWithServer(server, request);
         assertEquals(uri + queryString, newURI.toString());        
     }
+
+    @Test
+    public void testReconstructedURIsAreNotCachedByDefault() throws Exception {
+        Server server = new Server("www.example.com:8080");
+        URI newURI = context.reconstructURIWithServer(server, new URI("/abc?x=y"));
+        assertNotSame(newURI, context.reconstructURIWithServer(server, new URI("/abc?x=y")));
+        assertEquals(newURI, context.reconstructURIWithServer(server, new URI("/abc?x=y")));
+    }
+
+    @Test
+    public void testReconstructedURIsAreReused() throws Exception {
+        context = new MyLoadBalancerContext(lb, DefaultClientConfigImpl.getClientConfigWithDefaultValues("uriCache")
+                .set(LoadBalancerContext.RECONSTRUCTED_URI_CACHE_SIZE, 100));
+        Server server = new Server("www.example.com:8080");
+        URI newURI = context.reconstructURIWithServer(server, new URI("/abc?x=y"));
+        assertSame(newURI, context.reconstructURIWithServer(server, new URI("/abc?x=y")));
+
+        URI otherServerURI = context.reconstructURIWithServer(new Server("www.example.com:8081"), new URI("/abc?x=y"));
+        assertNotSame(newURI, otherServerURI);
+        assertEquals("http://www.example.com:8081/abc?x=y", otherServerURI.toString());
+
+        server.setPort(8082);
+        assertEquals("http://www.example.com:8082/abc?x=y", context.reconstructURIWithServer(server, new URI("/abc?x=y")).toString());
+    }
 }
 
 class MyLoadBalancerContext extends LoadBalancerContext {
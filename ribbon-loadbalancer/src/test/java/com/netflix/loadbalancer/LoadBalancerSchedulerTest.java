@@ -0,0 +1,118 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class LoadBalancerSchedulerTest {
+
+    @Test
+    public void testFailingTaskKeepsRunning() {
+        AtomicInteger runs = new AtomicInteger();
+        ScheduledFuture<?> future = LoadBalancerScheduler.scheduleWithFixedDelay("failing", () -> {
+            runs.incrementAndGet();
+            throw new RuntimeException("failed");
+        }, 0, 10, TimeUnit.MILLISECONDS);
+        try {
+            await().atMost(5, TimeUnit.SECONDS).until(() -> runs.get() >= 3);
+        } finally {
+            future.cancel(false);
+        }
+    }
+
+    @Test
+    public void testLoadBalancersDoNotCreateTimerThreads() {
+        Set<Thread> before = Thread.getAllStackTraces().keySet();
+        BaseLoadBalancer[] lbs = new BaseLoadBalancer[20];
+        AtomicInteger pings = new AtomicInteger();
+        for (int i = 0; i < lbs.length; i++) {
+            WeightedResponseTimeRule rule = new WeightedResponseTimeRule();
+            lbs[i] = new BaseLoadBalancer("lb" + i, rule, new LoadBalancerStats("lb" + i), server -> {
+                pings.incrementAndGet();
+                return true;
+            });
+            lbs[i].addServers(Arrays.asList(new Server("host", 80)));
+        }
+        try {
+            long timerThreads = Thread.getAllStackTraces().keySet().stream()
+                    .filter(t -> !before.contains(t))
+                    .filter(t -> t.getName().startsWith("NFLoadBalancer-"))
+                    .count();
+            assertEquals(0, timerThreads);
+            assertTrue(pings.get() >= lbs.length);
+            // a scheduled ping round may have been running when the server was added, the next one marks it up
+            for (BaseLoadBalancer lb : lbs) {
+                await().atMost(15, TimeUnit.SECONDS).until(() -> lb.getReachableServers().size() == 1);
+            }
+        } finally {
+            for (BaseLoadBalancer lb : lbs) {
+                ((WeightedResponseTimeRule) lb.getRule()).shutdown();
+                lb.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testBlockingPingsDoNotDelayScheduledTasks() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean blocking = new AtomicBoolean();
+        AtomicInteger blockedPings = new AtomicInteger();
+        IPing ping = server -> {
+            if (blocking.get()) {
+                blockedPings.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return true;
+        };
+        // more load balancers than threads of the scheduler
+        BaseLoadBalancer[] lbs = new BaseLoadBalancer[LoadBalancerScheduler.getPoolSize() + 1];
+        for (int i = 0; i < lbs.length; i++) {
+            lbs[i] = new BaseLoadBalancer("blocking" + i, new RoundRobinRule(), new LoadBalancerStats("blocking" + i), ping);
+            lbs[i].addServers(Arrays.asList(new Server("host", 80)));
+            lbs[i].setPingInterval(1);
+        }
+        try {
+            blocking.set(true);
+            await().atMost(5, TimeUnit.SECONDS).until(() -> blockedPings.get() == lbs.length);
+
+            CountDownLatch ran = new CountDownLatch(1);
+            LoadBalancerScheduler.schedule("other", ran::countDown, 0, TimeUnit.MILLISECONDS);
+            assertTrue(ran.await(1, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            for (BaseLoadBalancer lb : lbs) {
+                lb.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.netflix.client.config.CommonClientConfigKey;
+import com.netflix.client.config.DefaultClientConfigImpl;
+
+public class ParallelPingStrategyTest {
+
+    private final CountDownLatch blocked = new CountDownLatch(1);
+
+    @After
+    public void release() {
+        blocked.countDown();
+    }
+
+    private static Server[] servers(int count) {
+        Server[] servers = new Server[count];
+        for (int i = 0; i < count; i++) {
+            servers[i] = new Server("host" + i, 80 + i);
+        }
+        return servers;
+    }
+
+    @Test
+    public void testPingsInParallel() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        IPing ping = server -> {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return server.getPort() % 2 == 0;
+        };
+        Server[] servers = servers(40);
+        long start = System.nanoTime();
+        boolean[] results = new ParallelPingStrategy(10, 10000).pingServers(ping, servers);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        for (int i = 0; i < servers.length; i++) {
+            assertEquals(servers[i].getPort() % 2 == 0, results[i]);
+        }
+        assertTrue(maxInFlight.get() <= 10);
+        // 40 serial pings take 2 seconds
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis < 1500);
+    }
+
+    @Test
+    public void testSlowPingDoesNotStallTheRound() {
+        IPing ping = server -> {
+            if (server.getHost().equals("host0")) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return true;
+        };
+        Server[] servers = servers(5);
+        servers[0].setAlive(true);
+        long start = System.nanoTime();
+        boolean[] results = new ParallelPingStrategy(5, 200).pingServers(ping, servers);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis < 2000);
+        assertFalse(results[0]);
+        for (int i = 1; i < servers.length; i++) {
+            assertTrue(results[i]);
+        }
+    }
+
+    @Test
+    public void testServersNotPingedInTimeKeepTheirStatus() {
+        IPing ping = server -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+        Server[] servers = servers(3);
+        servers[1].setAlive(true);
+        boolean[] results = new ParallelPingStrategy(1, 100).pingServers(ping, servers);
+        // the first server was being pinged, the others were never pinged
+        assertFalse(results[0]);
+        assertTrue(results[1]);
+        assertFalse(results[2]);
+    }
+
+    @Test
+    public void testLoadBalancerUsesParallelPing() {
+        Server[] servers = servers(4);
+        BaseLoadBalancer lb = new BaseLoadBalancer(server -> server.getPort() != 81, new RoundRobinRule(),
+                new ParallelPingStrategy());
+        lb.addServers(java.util.Arrays.asList(servers));
+        lb.forceQuickPing();
+        assertEquals(3, lb.getReachableServers().size());
+        assertFalse(lb.getReachableServers().contains(servers[1]));
+        lb.shutdown();
+    }
+
+    @Test
+    public void testStrategyFromConfig() {
+        DefaultClientConfigImpl config = DefaultClientConfigImpl.getClientConfigWithDefaultValues("testParallelPing");
+        config.set(CommonClientConfigKey.NFLoadBalancerPingStrategyClassName, ParallelPingStrategy.class.getName());
+        config.set(ParallelPingStrategy.MAX_CONCURRENCY, 3);
+        config.set(ParallelPingStrategy.TIMEOUT_MILLIS, 500);
+        BaseLoadBalancer lb = new BaseLoadBalancer(config);
+        try {
+            ParallelPingStrategy strategy = (ParallelPingStrategy) lb.getPingStrategy();
+            assertEquals(3, strategy.getMaxConcurrency());
+            assertEquals(500, strategy.getTimeoutMillis());
+        } finally {
+            lb.shutdown();
+        }
+    }
+
+    @Test
+    public void testPoolSizeChanges() {
+        int poolSize = ParallelPingStrategy.getPoolSize();
+        try {
+            ParallelPingStrategy.setPoolSize(poolSize + 8);
+            assertEquals(poolSize + 8, ParallelPingStrategy.getPoolSize());
+            ParallelPingStrategy.setPoolSize(2);
+            assertEquals(2, ParallelPingStrategy.getPoolSize());
+        } finally {
+            ParallelPingStrategy.setPoolSize(poolSize);
+        }
+    }
+}
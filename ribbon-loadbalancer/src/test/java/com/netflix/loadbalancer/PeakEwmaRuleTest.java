@@ -0,0 +1,64 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class PeakEwmaRuleTest {
+
+    @Test
+    public void testSlowServerIsAvoidedAfterFirstSlowResponse() {
+        List<Server> servers = Lists.newArrayList(new Server("0", 80), new Server("1", 80));
+        IRule rule = new PeakEwmaRule();
+        BaseLoadBalancer lb = LoadBalancerBuilder.newBuilder().withRule(rule).buildFixedServerListLoadBalancer(servers);
+        ServerStats fast = lb.getLoadBalancerStats().getSingleServerStat(servers.get(0));
+        ServerStats slow = lb.getLoadBalancerStats().getSingleServerStat(servers.get(1));
+        for (int i = 0; i < 100; i++) {
+            fast.noteResponseTime(10);
+            slow.noteResponseTime(10);
+        }
+        slow.noteResponseTime(2000);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(servers.get(0), lb.chooseServer());
+        }
+    }
+
+    @Test
+    public void testActiveRequestsAreTakenIntoAccount() {
+        List<Server> servers = Lists.newArrayList(new Server("0", 80), new Server("1", 80));
+        IRule rule = new PeakEwmaRule();
+        BaseLoadBalancer lb = LoadBalancerBuilder.newBuilder().withRule(rule).buildFixedServerListLoadBalancer(servers);
+        ServerStats first = lb.getLoadBalancerStats().getSingleServerStat(servers.get(0));
+        ServerStats second = lb.getLoadBalancerStats().getSingleServerStat(servers.get(1));
+        first.noteResponseTime(10);
+        second.noteResponseTime(15);
+        for (int i = 0; i < 3; i++) {
+            first.incrementActiveRequestsCount();
+        }
+        // 10 * 4 > 15 * 1
+        for (int i = 0; i < 100; i++) {
+            assertEquals(servers.get(1), lb.chooseServer());
+        }
+    }
+}
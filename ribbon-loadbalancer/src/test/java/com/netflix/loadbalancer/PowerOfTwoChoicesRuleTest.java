@@ -0,0 +1,77 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class PowerOfTwoChoicesRuleTest {
+
+    private static List<Server> servers(int count) {
+        List<Server> servers = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            servers.add(new Server(String.valueOf(i), 80));
+        }
+        return servers;
+    }
+
+    @Test
+    public void testChoosesLessLoadedServer() {
+        List<Server> servers = servers(2);
+        IRule rule = new PowerOfTwoChoicesRule();
+        BaseLoadBalancer lb = LoadBalancerBuilder.newBuilder().withRule(rule).buildFixedServerListLoadBalancer(servers);
+        ServerStats stats = lb.getLoadBalancerStats().getSingleServerStat(servers.get(0));
+        stats.incrementActiveRequestsCount();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(servers.get(1), lb.chooseServer());
+        }
+    }
+
+    @Test
+    public void testTieIsBrokenByResponseTime() {
+        List<Server> servers = servers(2);
+        IRule rule = new PowerOfTwoChoicesRule();
+        BaseLoadBalancer lb = LoadBalancerBuilder.newBuilder().withRule(rule).buildFixedServerListLoadBalancer(servers);
+        lb.getLoadBalancerStats().getSingleServerStat(servers.get(0)).noteResponseTime(10);
+        lb.getLoadBalancerStats().getSingleServerStat(servers.get(1)).noteResponseTime(100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(servers.get(0), lb.chooseServer());
+        }
+    }
+
+    @Test
+    public void testSkipsCircuitTrippedServers() {
+        List<Server> servers = servers(10);
+        IRule rule = new PowerOfTwoChoicesRule();
+        BaseLoadBalancer lb = LoadBalancerBuilder.newBuilder().withRule(rule).buildFixedServerListLoadBalancer(servers);
+        ServerStats stats = lb.getLoadBalancerStats().getSingleServerStat(servers.get(3));
+        for (int i = 0; i < 3; i++) {
+            stats.incrementSuccessiveConnectionFailureCount();
+        }
+        for (int i = 0; i < 1000; i++) {
+            Server server = lb.chooseServer();
+            assertNotNull(server);
+            assertNotEquals(servers.get(3), server);
+        }
+    }
+}
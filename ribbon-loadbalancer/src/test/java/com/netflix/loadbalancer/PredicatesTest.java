@@ -227,4 +227,76 @@ public class PredicatesTest {
         assertEquals(6, filtered.size());
     }
 
+    @Test
+    public void testChooseRoundRobinMatchesEligibleServers() {
+        LoadBalancerStats lbStats = new LoadBalancerStats("default");
+        List<Server> servers = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            Server server = new Server("server:" + i);
+            servers.add(server);
+            if (i % 3 == 0) {
+                lbStats.getSingleServerStat(server).incrementActiveRequestsCount();
+            }
+        }
+        AbstractServerPredicate p = AbstractServerPredicate.ofServerPredicate(
+                server -> lbStats.getSingleServerStat(server).getActiveRequestsCount() == 0);
+        CompositePredicate c = CompositePredicate.withPredicate(p)
+                .addFallbackPredicate(AbstractServerPredicate.alwaysTrue())
+                .build();
+        List<Server> eligible = c.getEligibleServers(servers, "key");
+        assertEquals(6, eligible.size());
+        for (int i = 0; i < eligible.size() * 2; i++) {
+            assertEquals(eligible.get(i % eligible.size()), c.chooseRoundRobinAfterFiltering(servers, "key").get());
+        }
+
+        // too few servers pass the primary predicate, the fallback is used
+        CompositePredicate withThreshold = CompositePredicate.withPredicate(p)
+                .setFallbackThresholdAsMinimalFilteredNumberOfServers(7)
+                .addFallbackPredicate(AbstractServerPredicate.alwaysTrue())
+                .build();
+        for (int i = 0; i < servers.size(); i++) {
+            assertEquals(servers.get(i), withThreshold.chooseRoundRobinAfterFiltering(servers).get());
+        }
+        assertFalse(CompositePredicate.withPredicate(AbstractServerPredicate.ofServerPredicate(server -> false))
+                .build().chooseRandomlyAfterFiltering(servers).isPresent());
+    }
+
+    @Test
+    public void testChooseUsesOverriddenEligibleServers() {
+        List<Server> servers = Arrays.asList(new Server("a:80"), new Server("b:80"), new Server("c:80"));
+        AbstractServerPredicate p = new AbstractServerPredicate() {
+            @Override
+            public boolean apply(PredicateKey input) {
+                return true;
+            }
+
+            @Override
+            public List<Server> getEligibleServers(List<Server> servers, Object loadBalancerKey) {
+                return servers.subList(1, 2);
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            assertEquals(servers.get(1), p.chooseRoundRobinAfterFiltering(servers, null).get());
+        }
+    }
+
+    @Test
+    public void testChooseUsesOverriddenEligibleServersWithoutKey() {
+        List<Server> servers = Arrays.asList(new Server("a:80"), new Server("b:80"), new Server("c:80"));
+        AbstractServerPredicate p = new AbstractServerPredicate() {
+            @Override
+            public boolean apply(PredicateKey input) {
+                return true;
+            }
+
+            @Override
+            public List<Server> getEligibleServers(List<Server> servers) {
+                return servers.subList(2, 3);
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            assertEquals(servers.get(2), p.chooseRoundRobinAfterFiltering(servers).get());
+            assertEquals(servers.get(2), p.chooseRandomlyAfterFiltering(servers).get());
+        }
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.netflix.client.config.UnboxedIntProperty;
+
+public class ResponseTimeEwmaTest {
+
+    private final AtomicLong nanos = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    private ResponseTimeEwma create(boolean peak) {
+        return new ResponseTimeEwma(peak, new UnboxedIntProperty(10), nanos::get);
+    }
+
+    @Test
+    public void testFirstValue() {
+        ResponseTimeEwma ewma = create(false);
+        assertEquals(0, ewma.get(), 0);
+        ewma.record(50);
+        assertEquals(50, ewma.get(), 0);
+    }
+
+    @Test
+    public void testOlderValuesLoseWeightWithTime() {
+        ResponseTimeEwma ewma = create(false);
+        ewma.record(100);
+        // no time elapsed, the previous average keeps all its weight
+        ewma.record(200);
+        assertEquals(100, ewma.get(), 0.001);
+
+        // after one decay period the previous average keeps 1/e of its weight
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        ewma.record(200);
+        assertEquals(100 / Math.E + 200 * (1 - 1 / Math.E), ewma.get(), 0.001);
+
+        // the plain average does not change without new values
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(100));
+        assertEquals(100 / Math.E + 200 * (1 - 1 / Math.E), ewma.get(), 0.001);
+    }
+
+    @Test
+    public void testPeakJumpsAndDecays() {
+        ResponseTimeEwma ewma = create(true);
+        ewma.record(10);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        ewma.record(1000);
+        assertEquals(1000, ewma.get(), 0.001);
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(1000 / Math.E, ewma.get(), 0.001);
+
+        ewma.record(10);
+        assertEquals(1000 / Math.E + 10 * (1 - 1 / Math.E), ewma.get(), 0.001);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class ResponseTimeHistogramTest {
+
+    private final AtomicLong time = new AtomicLong(1000000);
+
+    private final ResponseTimeHistogram histogram = new ResponseTimeHistogram(60000, time::get);
+
+    @Test
+    public void testBucketsKeepRelativeError() {
+        int previous = -1;
+        for (long micros = 0; micros < 10000000; micros = micros < 100 ? micros + 1 : micros * 11 / 10) {
+            int index = ResponseTimeHistogram.bucketIndex(micros);
+            assertTrue(index >= previous);
+            assertTrue(index < ResponseTimeHistogram.BUCKET_COUNT);
+            double value = ResponseTimeHistogram.bucketValue(index);
+            assertTrue("value " + micros, Math.abs(value - micros) <= Math.max(0, micros / 32.0));
+            previous = index;
+        }
+        assertEquals(ResponseTimeHistogram.BUCKET_COUNT - 1, ResponseTimeHistogram.bucketIndex(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        ResponseTimeHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500.5, snapshot.getMean(), 0.01);
+        assertEquals(500, snapshot.getPercentile(50), 500 / 32.0);
+        assertEquals(990, snapshot.getPercentile(99), 990 / 32.0);
+        assertEquals(1, snapshot.getPercentile(0), 1 / 32.0);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMean(), 0.0001);
+        assertEquals(1, histogram.getMinimum(), 0);
+        assertEquals(1000, histogram.getMaximum(), 0);
+        assertEquals(288.67, histogram.getStdDev(), 0.01);
+    }
+
+    @Test
+    public void testOldValuesLeaveTheWindow() {
+        histogram.record(100);
+        time.addAndGet(30000);
+        histogram.record(200);
+        assertEquals(2, histogram.snapshot().getCount());
+
+        time.addAndGet(45000);
+        ResponseTimeHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(200, snapshot.getPercentile(50), 200 / 32.0);
+
+        time.addAndGet(60000);
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getPercentile(99), 0);
+        // overall statistics are kept
+        assertEquals(150, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void testReusedSlotIsCleared() {
+        histogram.record(100);
+        time.addAndGet(60000);
+        histogram.record(300);
+        ResponseTimeHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(300, snapshot.getMean(), 0);
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getMinimum(), 0);
+        assertEquals(0, histogram.getMaximum(), 0);
+        assertEquals(0, histogram.getStdDev(), 0);
+        assertEquals(0, histogram.snapshot().getMean(), 0);
+    }
+}
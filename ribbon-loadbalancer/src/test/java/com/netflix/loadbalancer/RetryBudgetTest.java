@@ -0,0 +1,95 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.netflix.client.config.Property;
+
+public class RetryBudgetTest {
+
+    private static RetryBudget budget(double percentOfRequests, int minRetriesPerSecond, int maxBalance) {
+        return new RetryBudget(Property.of(true), Property.of(percentOfRequests), Property.of(minRetriesPerSecond),
+                Property.of(maxBalance));
+    }
+
+    @Test
+    public void testDisabledBudgetAllowsAllRetries() {
+        RetryBudget budget = new RetryBudget();
+        assertFalse(budget.isEnabled());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(budget.tryRetry());
+        }
+        assertEquals(0, budget.getRetriesRejected());
+    }
+
+    @Test
+    public void testRetriesArePercentageOfSuccesses() {
+        RetryBudget budget = budget(0.2, 0, 100);
+        assertFalse(budget.tryRetry());
+        for (int i = 0; i < 10; i++) {
+            budget.onRequestSucceeded();
+        }
+        assertEquals(2.0, budget.getBalance(), 0.001);
+        assertTrue(budget.tryRetry());
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+        assertEquals(2, budget.getRetriesAllowed());
+        assertEquals(2, budget.getRetriesRejected());
+    }
+
+    @Test
+    public void testBalanceIsCapped() {
+        RetryBudget budget = budget(1.0, 0, 5);
+        for (int i = 0; i < 100; i++) {
+            budget.onRequestSucceeded();
+        }
+        assertEquals(5.0, budget.getBalance(), 0.001);
+    }
+
+    @Test
+    public void testRefillOverTime() {
+        RetryBudget budget = budget(0.0, 10, 100);
+        assertEquals(10.0, budget.getBalance(), 0.001);
+        long now = System.nanoTime();
+        budget.refill(now + TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(budget.getBalance() >= 15.0);
+        assertTrue(budget.getBalance() < 16.0);
+    }
+
+    @Test
+    public void testBackoffGrowsExponentiallyUpToMax() {
+        RetryBackoff backoff = new RetryBackoff(Property.of(50), Property.of(300));
+        assertTrue(backoff.isEnabled());
+        assertEquals(50, backoff.getMaxDelayMillis(1));
+        assertEquals(100, backoff.getMaxDelayMillis(2));
+        assertEquals(200, backoff.getMaxDelayMillis(3));
+        assertEquals(300, backoff.getMaxDelayMillis(4));
+        assertEquals(300, backoff.getMaxDelayMillis(100));
+        for (int i = 0; i < 100; i++) {
+            long delay = backoff.getDelayMillis(2);
+            assertTrue(delay >= 0 && delay <= 100);
+        }
+        assertFalse(new RetryBackoff().isEnabled());
+        assertEquals(0, new RetryBackoff().getDelayMillis(3));
+    }
+}
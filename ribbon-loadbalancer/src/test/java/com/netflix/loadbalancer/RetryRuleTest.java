@@ -0,0 +1,109 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RetryRuleTest {
+
+    private final AtomicInteger chooseCount = new AtomicInteger();
+    private final RoundRobinRule countingRule = new RoundRobinRule() {
+        @Override
+        public Server choose(ILoadBalancer lb, Object key) {
+            chooseCount.incrementAndGet();
+            return super.choose(lb, key);
+        }
+    };
+    private final RetryRule rule = new RetryRule(countingRule, 5000);
+    private final BaseLoadBalancer lb = new BaseLoadBalancer(null, rule);
+
+    @After
+    public void shutdown() {
+        lb.shutdown();
+    }
+
+    @Test
+    public void testWakesUpWhenServersAreAdded() throws Exception {
+        CompletableFuture<Server> chosen = CompletableFuture.supplyAsync(() -> rule.choose(null));
+        Thread.sleep(200);
+        assertFalse(chosen.isDone());
+        lb.addServers(Arrays.asList(new Server("host", 80)));
+        assertEquals(new Server("host", 80), chosen.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDoesNotSpinWhileWaiting() {
+        rule.setMaxRetryMillis(500);
+        long start = System.nanoTime();
+        assertNull(rule.choose(null));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis >= 500);
+        assertTrue("chose " + chooseCount.get() + " times", chooseCount.get() <= 500 / RetryRule.RECHECK_INTERVAL_MILLIS + 2);
+    }
+
+    @Test
+    public void testChooseAsync() throws Exception {
+        CompletableFuture<Server> chosen = new CompletableFuture<Server>();
+        rule.chooseAsync(null).subscribe(chosen::complete, chosen::completeExceptionally);
+        Thread.sleep(200);
+        assertFalse(chosen.isDone());
+        lb.addServers(Arrays.asList(new Server("host", 80)));
+        assertEquals(new Server("host", 80), chosen.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testChooseAsyncCompletesEmptyAfterDeadline() {
+        rule.setMaxRetryMillis(200);
+        assertTrue(rule.chooseAsync(null).toList().toBlocking().single().isEmpty());
+    }
+
+    @Test
+    public void testMovesListenersWithLoadBalancer() throws Exception {
+        BaseLoadBalancer other = new BaseLoadBalancer(null, new RoundRobinRule());
+        try {
+            rule.setLoadBalancer(other);
+            CompletableFuture<Server> chosen = CompletableFuture.supplyAsync(() -> rule.choose(null));
+            Thread.sleep(100);
+            other.addServers(Arrays.asList(new Server("other", 80)));
+            assertEquals(new Server("other", 80), chosen.get(1, TimeUnit.SECONDS));
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    @Test
+    public void testDetachedWhenReplaced() throws Exception {
+        lb.setRule(new RoundRobinRule());
+        assertNull(rule.getLoadBalancer());
+
+        lb.setRule(rule);
+        assertSame(lb, rule.getLoadBalancer());
+        CompletableFuture<Server> chosen = CompletableFuture.supplyAsync(() -> rule.choose(null));
+        Thread.sleep(100);
+        lb.addServers(Arrays.asList(new Server("host", 80)));
+        assertEquals(new Server("host", 80), chosen.get(1, TimeUnit.SECONDS));
+    }
+}
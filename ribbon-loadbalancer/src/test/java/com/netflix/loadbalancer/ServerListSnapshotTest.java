@@ -0,0 +1,107 @@
+/*
+ *
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.netflix.loadbalancer;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ServerListSnapshotTest {
+
+    private static List<Server> servers(String... hosts) {
+        Server[] servers = new Server[hosts.length];
+        for (int i = 0; i < hosts.length; i++) {
+            servers[i] = new Server(hosts[i], 80);
+        }
+        return Arrays.asList(servers);
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByLaterUpdates() {
+        BaseLoadBalancer lb = new BaseLoadBalancer();
+        lb.setServersList(servers("a", "b", "c"));
+        ServerListSnapshot snapshot = lb.getServerListSnapshot();
+        assertEquals(3, snapshot.getAllServers().size());
+        assertEquals(3, snapshot.getReachableServers().size());
+
+        lb.setServersList(servers("d"));
+        assertEquals(servers("a", "b", "c"), snapshot.getAllServers());
+        assertEquals(servers("d"), lb.getAllServers());
+        assertTrue(lb.getServerListSnapshot().getVersion() > snapshot.getVersion());
+    }
+
+    @Test
+    public void testUnchangedServerListKeepsSnapshot() {
+        BaseLoadBalancer lb = new BaseLoadBalancer();
+        List<Server> servers = servers("a", "b");
+        lb.setServersList(servers);
+        ServerListSnapshot snapshot = lb.getServerListSnapshot();
+        lb.setServersList(new ArrayList<Server>(servers));
+        assertSame(snapshot, lb.getServerListSnapshot());
+
+        // new instances of the same servers replace the current ones
+        List<Server> newServers = servers("a", "b");
+        lb.setServersList(newServers);
+        assertNotSame(snapshot, lb.getServerListSnapshot());
+        assertSame(newServers.get(0), lb.getAllServers().get(0));
+    }
+
+    @Test
+    public void testMarkServerDownPublishesUpList() {
+        BaseLoadBalancer lb = new BaseLoadBalancer();
+        List<Server> servers = servers("a", "b", "c");
+        lb.setServersList(servers);
+        ServerListSnapshot before = lb.getServerListSnapshot();
+
+        lb.markServerDown(servers.get(1));
+        ServerListSnapshot after = lb.getServerListSnapshot();
+        assertEquals(Arrays.asList(servers.get(0), servers.get(2)), after.getReachableServers());
+        assertEquals(3, after.getServerCount(false));
+        assertSame(before.getAllServers(), after.getAllServers());
+        assertEquals(3, before.getReachableServers().size());
+
+        lb.markServerDown("c:80");
+        assertEquals(Arrays.asList(servers.get(0)), lb.getReachableServers());
+        assertNull(lb.getServerByIndex(1, true));
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testDeprecatedListFieldsFollowSnapshot() {
+        BaseLoadBalancer lb = new BaseLoadBalancer();
+        List<Server> servers = servers("a", "b");
+        lb.setServersList(servers);
+        assertEquals(servers, lb.allServerList);
+        assertEquals(servers, lb.upServerList);
+
+        lb.markServerDown(servers.get(0));
+        assertEquals(servers, lb.allServerList);
+        assertEquals(Arrays.asList(servers.get(1)), lb.upServerList);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotListsAreUnmodifiable() {
+        BaseLoadBalancer lb = new BaseLoadBalancer();
+        lb.setServersList(servers("a"));
+        lb.getServerListSnapshot().getAllServers().add(new Server("b", 80));
+    }
+}
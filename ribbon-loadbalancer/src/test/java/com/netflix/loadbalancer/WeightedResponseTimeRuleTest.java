@@ -5,13 +5,17 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -46,6 +50,37 @@ public class WeightedResponseTimeRuleTest {
         assertNotNull(chosen);
     }
 
+    @Test
+    public void shouldChooseServersWithLowerResponseTimeMoreOften() throws Exception {
+        waitUntilWeightsAreCalculated();
+
+        // response times are 300, 200 and 100, so the weights are 300, 400 and 500
+        assertEquals(asList(300d, 700d, 1200d), rule.getAccumulatedWeights());
+
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 12000; i++) {
+            String id = rule.choose(loadBalancer, KEY).getId();
+            Integer count = counts.get(id);
+            counts.put(id, count == null ? 1 : count + 1);
+        }
+        assertTrue(counts.get("first:80") < counts.get("second:80"));
+        assertTrue(counts.get("second:80") < counts.get("third:80"));
+    }
+
+    @Test
+    public void shouldOnlyChooseServersWithWeight() throws Exception {
+        waitUntilWeightsAreCalculated();
+
+        Server first = server("first");
+        Server second = server("second");
+        Server third = server("third");
+        rule.setWeights(new WeightedResponseTimeRule.ServerWeights(
+                new Server[] {first, second, third}, new double[] {0, 10, 10}));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(second, rule.choose(loadBalancer, KEY));
+        }
+    }
+
     private void waitUntilWeightsAreCalculated() {
         await().untilAsserted(new ThrowingRunnable() {
             @Override
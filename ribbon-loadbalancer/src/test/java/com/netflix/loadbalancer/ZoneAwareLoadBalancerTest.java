@@ -20,6 +20,7 @@ package com.netflix.loadbalancer;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -82,6 +83,7 @@ public class ZoneAwareLoadBalancerTest {
         LoadBalancerStats loadBalancerStats = balancer.getLoadBalancerStats();
         loadBalancerStats.initWithNiwsConfig(config);
         assertNotNull(loadBalancerStats);
+        loadBalancerStats.setZoneSnapshotRefreshIntervalMillis(0);
         List<Server> servers = new ArrayList<Server>();
         
         servers.add(createServer(1, "a"));
@@ -163,6 +165,7 @@ public class ZoneAwareLoadBalancerTest {
         balancer.init();
         LoadBalancerStats loadBalancerStats = balancer.getLoadBalancerStats();
         assertNotNull(loadBalancerStats);
+        loadBalancerStats.setZoneSnapshotRefreshIntervalMillis(0);
         List<Server> servers = new ArrayList<Server>();
         
         servers.add(createServer(1, "a"));
@@ -195,6 +198,7 @@ public class ZoneAwareLoadBalancerTest {
         balancer.init();
         LoadBalancerStats loadBalancerStats = balancer.getLoadBalancerStats();
         assertNotNull(loadBalancerStats);
+        loadBalancerStats.setZoneSnapshotRefreshIntervalMillis(0);
         List<Server> servers = new ArrayList<Server>();
         
         for (int i = 1; i <= 11; i++) {
@@ -224,6 +228,48 @@ public class ZoneAwareLoadBalancerTest {
     }
 
     
+    @Test
+    public void testZoneSnapshotsAreCached() throws Exception {
+        ZoneAwareLoadBalancer<Server> balancer = new ZoneAwareLoadBalancer<Server>();
+        balancer.init();
+        LoadBalancerStats loadBalancerStats = balancer.getLoadBalancerStats();
+        loadBalancerStats.setZoneSnapshotRefreshIntervalMillis(100);
+        List<Server> servers = Arrays.asList(createServer(1, "a"), createServer(1, "b"));
+        balancer.setServersList(servers);
+        balancer.setUpServerList(servers);
+
+        Map<String, ZoneSnapshot> snapshots = loadBalancerStats.getZoneSnapshots();
+        assertEquals(0, snapshots.get("us-east-1a").getActiveRequestsCount());
+        loadBalancerStats.incrementActiveRequestsCount(createServer(1, "a"));
+        assertSame(snapshots, loadBalancerStats.getZoneSnapshots());
+
+        Thread.sleep(150);
+        snapshots = loadBalancerStats.getZoneSnapshots();
+        assertEquals(1, snapshots.get("us-east-1a").getActiveRequestsCount());
+
+        // a new server list is visible right away
+        balancer.setServersList(Arrays.asList(createServer(1, "a"), createServer(2, "a"), createServer(1, "c")));
+        snapshots = loadBalancerStats.getZoneSnapshots();
+        assertEquals(2, snapshots.get("us-east-1a").getInstanceCount());
+        assertEquals(1, snapshots.get("us-east-1c").getInstanceCount());
+    }
+
+    @Test
+    public void testZoneLoadBalancersCreatedInConstructorAreKept() {
+        MockServerList serverList = new MockServerList();
+        serverList.setServerList(Arrays.asList(createServer(1, "a"), createServer(1, "b")));
+        ZoneAwareLoadBalancer<Server> balancer = LoadBalancerBuilder.<Server>newBuilder()
+                .withRule(new RoundRobinRule())
+                .withDynamicServerList(serverList)
+                .buildDynamicServerListLoadBalancer();
+        try {
+            assertEquals(1, balancer.getLoadBalancer("us-east-1a").getAllServers().size());
+            assertEquals(1, balancer.getLoadBalancer("us-east-1b").getAllServers().size());
+        } finally {
+            balancer.shutdown();
+        }
+    }
+
     @Test
     public void testAvailabilityFiltering() {
         ZoneAwareLoadBalancer balancer = new ZoneAwareLoadBalancer();
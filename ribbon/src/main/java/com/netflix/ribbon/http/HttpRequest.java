@@ -27,6 +27,7 @@ import io.netty.buffer.ByteBuf;
 import io.reactivex.netty.protocol.http.client.HttpClient;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import rx.Observable;
+import rx.functions.Func0;
 import rx.functions.Func1;
 import rx.subjects.ReplaySubject;
 
@@ -70,6 +71,7 @@ class HttpRequest<T> implements RibbonRequest<T> {
     private final CacheProviderWithKey<T> cacheProvider;
     private final Map<String, Object> requestProperties;
     private final HttpClient<ByteBuf, ByteBuf> client;
+    private final Object coalescingKey;
     /* package private for HttpMetaRequest */ final HttpRequestTemplate<T> template;
 
     HttpRequest(HttpRequestBuilder<T> requestBuilder) throws TemplateParsingException {
@@ -86,8 +88,13 @@ class HttpRequest<T> implements RibbonRequest<T> {
             cacheProvider = null;
         }
         template = requestBuilder.template();
-        if (!ByteBuf.class.isAssignableFrom(template.getClassType())) {
-            throw new IllegalArgumentException("Return type other than ByteBuf is not currently supported as serialization functionality is still work in progress");
+        if (template.coalescingKeyTemplate() != null) {
+            coalescingKey = RequestCoalescer.key(template, TemplateParser.toData(this.requestProperties, template.coalescingKeyTemplate()));
+        } else {
+            coalescingKey = null;
+        }
+        if (!ByteBuf.class.isAssignableFrom(template.getClassType()) && template.responseDecoder() == null) {
+            throw new IllegalArgumentException("Return type other than ByteBuf requires a ResponseDecoder");
         }
     }
 
@@ -98,13 +105,21 @@ class HttpRequest<T> implements RibbonRequest<T> {
                     requestProperties, template.cacheHystrixProperties()));
         }
         commands.add(new HttpResourceObservableCommand<T>(client, httpRequest, hystrixCacheKey, requestProperties, template.fallbackHandler(),
-                template.responseValidator(), template.getClassType(), template.hystrixProperties()));
+                template.responseValidator(), template.getClassType(), template.hystrixProperties(), template.responseDecoder()));
 
         return new HystrixObservableCommandChain<T>(commands);
     }
 
     @Override
     public Observable<T> toObservable() {
+        if (coalescingKey != null) {
+            return RequestCoalescer.coalesce(coalescingKey, template.maxCoalescedRequests(), new Func0<Observable<T>>() {
+                @Override
+                public Observable<T> call() {
+                    return createHystrixCommandChain().toObservable();
+                }
+            });
+        }
         return createHystrixCommandChain().toObservable();
     }
 
@@ -131,7 +146,7 @@ class HttpRequest<T> implements RibbonRequest<T> {
     }
 
     boolean isByteBufResponse() {
-        return ByteBuf.class.isAssignableFrom(template.getClassType());
+        return ByteBuf.class.isAssignableFrom(template.getClassType()) && template.responseDecoder() == null;
     }
 
     Observable<T> getObservable() {
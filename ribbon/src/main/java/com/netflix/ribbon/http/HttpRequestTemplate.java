@@ -66,6 +66,9 @@ public class HttpRequestTemplate<T> extends RequestTemplate<T, HttpClientRespons
         private Setter setter;
         private Map<String, ParsedTemplate> parsedTemplates;
         private ResponseValidator<HttpClientResponse<ByteBuf>> validator;
+        private ResponseDecoder<? extends T> decoder;
+        private ParsedTemplate coalescingKeyTemplate;
+        private int maxCoalescedRequests;
 
         private Builder(String name, HttpResourceGroup resourceGroup, Class<? extends T> classType) {
             this.name = name;
@@ -101,6 +104,32 @@ public class HttpRequestTemplate<T> extends RequestTemplate<T, HttpClientRespons
             return this;
         }
 
+        /**
+         * Set the decoder of the response content, which is needed for a type other than {@link ByteBuf}.
+         */
+        public Builder<T> withResponseDecoder(ResponseDecoder<? extends T> decoder) {
+            this.decoder = decoder;
+            return this;
+        }
+
+        /**
+         * Share one execution among the identical requests of this template in flight at the same time in the
+         * JVM, which get its result replayed. As the result is shared, this needs a {@link ResponseDecoder}.
+         *
+         * @param keyTemplate template of the key that identifies identical requests, resolved with the
+         *                    variables of the request
+         * @param maxCoalescedRequests maximum number of requests sharing an execution, above which requests
+         *                             execute on their own
+         */
+        public Builder<T> withRequestCoalescing(String keyTemplate, int maxCoalescedRequests) {
+            if (maxCoalescedRequests < 1) {
+                throw new IllegalArgumentException("maxCoalescedRequests must be positive: " + maxCoalescedRequests);
+            }
+            this.coalescingKeyTemplate = createParsedTemplate(keyTemplate);
+            this.maxCoalescedRequests = maxCoalescedRequests;
+            return this;
+        }
+
         public Builder<T>  withMethod(String method) {
             this.method = HttpMethod.valueOf(method);
             return this;
@@ -137,7 +166,12 @@ public class HttpRequestTemplate<T> extends RequestTemplate<T, HttpClientRespons
         }
 
         public HttpRequestTemplate<T> build() {
-            return new HttpRequestTemplate<T>(name, resourceGroup, classType, setter, method, headers, parsedUriTemplate, fallbackHandler, validator, cacheProvider, cacheKeyTemplate);
+            if (coalescingKeyTemplate != null && decoder == null) {
+                // the chunks of a ByteBuf response are released once emitted, so they cannot be replayed
+                throw new IllegalArgumentException("Request coalescing requires a ResponseDecoder");
+            }
+            return new HttpRequestTemplate<T>(name, resourceGroup, classType, setter, method, headers, parsedUriTemplate, fallbackHandler, validator, cacheProvider, cacheKeyTemplate,
+                    decoder, coalescingKeyTemplate, maxCoalescedRequests);
         }
     }
 
@@ -156,6 +190,9 @@ public class HttpRequestTemplate<T> extends RequestTemplate<T, HttpClientRespons
     private final int concurrentRequestLimit;
     private final HttpHeaders headers;
     private final HttpResourceGroup group;
+    private final ResponseDecoder<? extends T> decoder;
+    private final ParsedTemplate coalescingKeyTemplate;
+    private final int maxCoalescedRequests;
 
     public static class CacheProviderWithKeyTemplate<T> {
         private final ParsedTemplate keyTemplate;
@@ -177,7 +214,27 @@ public class HttpRequestTemplate<T> extends RequestTemplate<T, HttpClientRespons
                         HttpMethod method, HttpHeaders headers, ParsedTemplate uriTemplate,
                         FallbackHandler<T> fallbackHandler, ResponseValidator<HttpClientResponse<ByteBuf>> validator, CacheProviderWithKeyTemplate<T> cacheProvider,
                         ParsedTemplate hystrixCacheKeyTemplate) {
+        this(name, group, classType, setter, method, headers, uriTemplate, fallbackHandler, validator, cacheProvider,
+                hystrixCacheKeyTemplate, null, null, 0);
+    }
+
+    protected HttpRequestTemplate(String name, HttpResourceGroup group, Class<? extends T> classType, HystrixObservableCommand.Setter setter,
+                        HttpMethod method, HttpHeaders headers, ParsedTemplate uriTemplate,
+                        FallbackHandler<T> fallbackHandler, ResponseValidator<HttpClientResponse<ByteBuf>> validator, CacheProviderWithKeyTemplate<T> cacheProvider,
+                        ParsedTemplate hystrixCacheKeyTemplate, ResponseDecoder<? extends T> decoder) {
+        this(name, group, classType, setter, method, headers, uriTemplate, fallbackHandler, validator, cacheProvider,
+                hystrixCacheKeyTemplate, decoder, null, 0);
+    }
+
+    protected HttpRequestTemplate(String name, HttpResourceGroup group, Class<? extends T> classType, HystrixObservableCommand.Setter setter,
+                        HttpMethod method, HttpHeaders headers, ParsedTemplate uriTemplate,
+                        FallbackHandler<T> fallbackHandler, ResponseValidator<HttpClientResponse<ByteBuf>> validator, CacheProviderWithKeyTemplate<T> cacheProvider,
+                        ParsedTemplate hystrixCacheKeyTemplate, ResponseDecoder<? extends T> decoder,
+                        ParsedTemplate coalescingKeyTemplate, int maxCoalescedRequests) {
         this.group = group;
+        this.decoder = decoder;
+        this.coalescingKeyTemplate = coalescingKeyTemplate;
+        this.maxCoalescedRequests = maxCoalescedRequests;
         this.name = name;
         this.classType = classType;
         this.method = method;
@@ -235,6 +292,18 @@ public class HttpRequestTemplate<T> extends RequestTemplate<T, HttpClientRespons
         return validator;
     }
 
+    protected final ResponseDecoder<? extends T> responseDecoder() {
+        return decoder;
+    }
+
+    protected final ParsedTemplate coalescingKeyTemplate() {
+        return coalescingKeyTemplate;
+    }
+
+    protected final int maxCoalescedRequests() {
+        return maxCoalescedRequests;
+    }
+
     protected final FallbackHandler<T> fallbackHandler() {
         return fallbackHandler;
     }
@@ -262,7 +331,8 @@ public class HttpRequestTemplate<T> extends RequestTemplate<T, HttpClientRespons
 
     @Override
     public HttpRequestTemplate<T> copy(String name) {
-        HttpRequestTemplate<T> newTemplate = new HttpRequestTemplate<T>(name, group, classType, setter, method, headers, parsedUriTemplate, fallbackHandler, validator, cacheProvider, hystrixCacheKeyTemplate);
+        HttpRequestTemplate<T> newTemplate = new HttpRequestTemplate<T>(name, group, classType, setter, method, headers, parsedUriTemplate, fallbackHandler, validator, cacheProvider, hystrixCacheKeyTemplate,
+                decoder, coalescingKeyTemplate, maxCoalescedRequests);
         return newTemplate;
     }
 
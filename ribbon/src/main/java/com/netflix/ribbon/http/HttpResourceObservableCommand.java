@@ -22,11 +22,18 @@ import com.netflix.ribbon.ServerError;
 import com.netflix.ribbon.UnsuccessfulResponseException;
 import com.netflix.ribbon.hystrix.FallbackHandler;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
 import io.reactivex.netty.protocol.http.client.HttpClient;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
 import rx.Observable;
+import rx.Observable.OnSubscribe;
+import rx.Subscriber;
+import rx.functions.Action0;
 import rx.functions.Func1;
+import rx.subscriptions.Subscriptions;
 
 import java.util.Map;
 
@@ -39,6 +46,7 @@ public class HttpResourceObservableCommand<T> extends HystrixObservableCommand<T
     private final FallbackHandler<T> fallbackHandler;
     private final Class<? extends T> classType;
     private final ResponseValidator<HttpClientResponse<ByteBuf>> validator;
+    private final ResponseDecoder<? extends T> decoder;
 
     public HttpResourceObservableCommand(HttpClient<ByteBuf, ByteBuf> httpClient,
                                          HttpClientRequest<ByteBuf> httpRequest, String hystrixCacheKey,
@@ -47,7 +55,22 @@ public class HttpResourceObservableCommand<T> extends HystrixObservableCommand<T
                                          ResponseValidator<HttpClientResponse<ByteBuf>> validator,
                                          Class<? extends T> classType,
                                          HystrixObservableCommand.Setter setter) {
+        this(httpClient, httpRequest, hystrixCacheKey, requestProperties, fallbackHandler, validator, classType, setter, null);
+    }
+
+    /**
+     * @param decoder decoder of the response content, or null to emit the {@link ByteBuf} chunks of the content
+     */
+    public HttpResourceObservableCommand(HttpClient<ByteBuf, ByteBuf> httpClient,
+                                         HttpClientRequest<ByteBuf> httpRequest, String hystrixCacheKey,
+                                         Map<String, Object> requestProperties,
+                                         FallbackHandler<T> fallbackHandler,
+                                         ResponseValidator<HttpClientResponse<ByteBuf>> validator,
+                                         Class<? extends T> classType,
+                                         HystrixObservableCommand.Setter setter,
+                                         ResponseDecoder<? extends T> decoder) {
         super(setter);
+        this.decoder = decoder;
         this.httpClient = httpClient;
         this.fallbackHandler = fallbackHandler;
         this.validator = validator;
@@ -96,6 +119,9 @@ public class HttpResourceObservableCommand<T> extends HystrixObservableCommand<T
         return httpResponseObservable.flatMap(new Func1<HttpClientResponse<ByteBuf>, Observable<T>>() {
             @Override
             public Observable<T> call(HttpClientResponse<ByteBuf> t1) {
+                if (decoder != null) {
+                    return decode(t1.getContent());
+                }
                 return t1.getContent().map(new Func1<ByteBuf, T>() {
                     @Override
                     public T call(ByteBuf t1) {
@@ -106,4 +132,86 @@ public class HttpResourceObservableCommand<T> extends HystrixObservableCommand<T
             }
         });
     }
+
+    /**
+     * Gather the chunks of the content in a {@link CompositeByteBuf}, which keeps the chunks as they are
+     * instead of copying them, and decode it once complete. The chunks are released when the content is
+     * decoded, fails or is unsubscribed from.
+     */
+    private Observable<T> decode(final Observable<ByteBuf> content) {
+        return Observable.create(new OnSubscribe<T>() {
+            @Override
+            public void call(final Subscriber<? super T> subscriber) {
+                final ContentAggregate aggregate = new ContentAggregate();
+                subscriber.add(Subscriptions.create(new Action0() {
+                    @Override
+                    public void call() {
+                        aggregate.release();
+                    }
+                }));
+                subscriber.add(content.unsafeSubscribe(new Subscriber<ByteBuf>() {
+                    @Override
+                    public void onNext(ByteBuf chunk) {
+                        aggregate.add(chunk);
+                    }
+
+                    @Override
+                    public void onError(Throwable e) {
+                        aggregate.release();
+                        subscriber.onError(e);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        T result;
+                        try {
+                            result = aggregate.decode();
+                        } catch (Throwable e) {
+                            subscriber.onError(e);
+                            return;
+                        }
+                        if (!subscriber.isUnsubscribed()) {
+                            subscriber.onNext(result);
+                            subscriber.onCompleted();
+                        }
+                    }
+                }));
+            }
+        });
+    }
+
+    /**
+     * The content received so far, which may be released by an unsubscription while chunks are still
+     * coming in, hence the lock.
+     */
+    private class ContentAggregate {
+        private final CompositeByteBuf buffer = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        private boolean released;
+
+        synchronized void add(ByteBuf chunk) {
+            if (!released && chunk.isReadable()) {
+                // the transport releases the chunk once it is emitted
+                buffer.addComponent(chunk.retain());
+                buffer.writerIndex(buffer.writerIndex() + chunk.readableBytes());
+            }
+        }
+
+        synchronized T decode() throws Exception {
+            if (released) {
+                throw new IllegalStateException("Content was released before it was decoded");
+            }
+            try {
+                return decoder.decode(new ByteBufInputStream(buffer));
+            } finally {
+                release();
+            }
+        }
+
+        synchronized void release() {
+            if (!released) {
+                released = true;
+                buffer.release();
+            }
+        }
+    }
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.ribbon.http;
+
+import rx.Observable;
+import rx.Observable.OnSubscribe;
+import rx.Subscriber;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.subjects.ReplaySubject;
+import rx.subscriptions.Subscriptions;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares one execution among the identical requests that are in flight at the same time in the JVM.
+ * Requests are identical when they have the same key, see {@link #key(Object, String)}.
+ * <p>
+ * The first request for a key executes, and the requests for the same key that come while it is in
+ * flight subscribe to it and get its result replayed, up to a maximum number of subscribers above
+ * which requests execute on their own. The execution is forgotten once it terminates, so the next
+ * request for the key executes again, and it is cancelled when all its subscribers unsubscribe.
+ */
+final class RequestCoalescer {
+
+    private static final ConcurrentMap<Object, Flight<?>> flights = new ConcurrentHashMap<Object, Flight<?>>();
+
+    private RequestCoalescer() {
+    }
+
+    /**
+     * Names of templates are only unique within a resource group, and the results of two templates may
+     * have different types, so a key only matches the requests of the same template instance.
+     *
+     * @param template the template of the request
+     * @param requestKey the key of the request within the template
+     */
+    static Object key(Object template, String requestKey) {
+        return new Key(template, requestKey);
+    }
+
+    static <T> Observable<T> coalesce(final Object key, final int maxSubscribers, final Func0<Observable<T>> request) {
+        return Observable.create(new OnSubscribe<T>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public void call(Subscriber<? super T> subscriber) {
+                while (true) {
+                    Flight<T> flight = (Flight<T>) flights.get(key);
+                    if (flight == null) {
+                        Flight<T> created = new Flight<T>(key);
+                        if (flights.putIfAbsent(key, created) == null) {
+                            created.tryJoin(subscriber, maxSubscribers);
+                            Observable<T> source;
+                            try {
+                                source = request.call();
+                            } catch (RuntimeException e) {
+                                // fail the subscribers that joined meanwhile rather than leaving them waiting
+                                created.fail(e);
+                                return;
+                            }
+                            created.start(source);
+                            return;
+                        }
+                    } else {
+                        switch (flight.tryJoin(subscriber, maxSubscribers)) {
+                        case JOINED:
+                            return;
+                        case FULL:
+                            Observable<T> source;
+                            try {
+                                source = request.call();
+                            } catch (RuntimeException e) {
+                                subscriber.onError(e);
+                                return;
+                            }
+                            source.unsafeSubscribe(subscriber);
+                            return;
+                        default:
+                            // cancelled, try again with a new flight
+                            flights.remove(key, flight);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private enum JoinResult {
+        JOINED, FULL, CANCELLED
+    }
+
+    private static final class Key {
+        private final Object template;
+        private final String requestKey;
+
+        Key(Object template, String requestKey) {
+            this.template = template;
+            this.requestKey = requestKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return template == other.template && requestKey.equals(other.requestKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(template) + requestKey.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return requestKey;
+        }
+    }
+
+    private static class Flight<T> {
+        private final Object key;
+        private final ReplaySubject<T> subject = ReplaySubject.create();
+        // number of subscribers, or -1 once cancelled
+        private final AtomicInteger subscribers = new AtomicInteger();
+        private volatile Subscription source;
+
+        Flight(Object key) {
+            this.key = key;
+        }
+
+        void fail(Throwable e) {
+            flights.remove(key, this);
+            subject.onError(e);
+        }
+
+        void start(Observable<T> request) {
+            source = request
+                    .doOnTerminate(new Action0() {
+                        @Override
+                        public void call() {
+                            flights.remove(key, Flight.this);
+                        }
+                    })
+                    .subscribe(subject);
+            if (subscribers.get() < 0) {
+                // all subscribers left before the request started
+                source.unsubscribe();
+            }
+        }
+
+        JoinResult tryJoin(Subscriber<? super T> subscriber, int maxSubscribers) {
+            while (true) {
+                int current = subscribers.get();
+                if (current < 0) {
+                    return JoinResult.CANCELLED;
+                }
+                if (current >= maxSubscribers) {
+                    return JoinResult.FULL;
+                }
+                if (subscribers.compareAndSet(current, current + 1)) {
+                    break;
+                }
+            }
+            subscriber.add(Subscriptions.create(new Action0() {
+                @Override
+                public void call() {
+                    leave();
+                }
+            }));
+            subject.unsafeSubscribe(subscriber);
+            return JoinResult.JOINED;
+        }
+
+        private void leave() {
+            if (subscribers.decrementAndGet() == 0 && subscribers.compareAndSet(0, -1)) {
+                flights.remove(key, this);
+                Subscription current = source;
+                if (current != null) {
+                    current.unsubscribe();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.ribbon.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes the content of a response into the type of an {@link HttpRequestTemplate}.
+ * <p>
+ * The content is given as a stream over the chunks of the response as they were received, without
+ * copying them, so that a streaming parser can read it directly, for example with Jackson:
+ * <pre>
+ * template.withResponseDecoder(new ResponseDecoder&lt;Movie&gt;() {
+ *     public Movie decode(InputStream content) throws IOException {
+ *         return objectMapper.readValue(content, Movie.class);
+ *     }
+ * });
+ * </pre>
+ * The stream is only valid during the call, as the buffers behind it are released when it returns.
+ *
+ * @param <T> Type of the decoded content
+ */
+public interface ResponseDecoder<T> {
+
+    T decode(InputStream content) throws IOException;
+}
@@ -19,13 +19,40 @@ import java.util.List;
 
 public class ParsedTemplate {
 
+    static final byte LITERAL = 0;
+    static final byte PATH_VAR = 1;
+    static final byte MATRIX_VAR = 2;
+
     private List<Object> parsed;
     private String template;
 
+    // compiled form of the parsed list used by TemplateParser: for every part its kind, and
+    // the literal text or the name of the variable
+    private final byte[] kinds;
+    private final String[] values;
+    private final int literalLength;
+
     public ParsedTemplate(List<Object> parsed, String template) {
         super();
         this.parsed = parsed;
         this.template = template;
+        int size = parsed == null ? 0 : parsed.size();
+        this.kinds = new byte[size];
+        this.values = new String[size];
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            Object part = parsed.get(i);
+            values[i] = String.valueOf(part);
+            if (part instanceof MatrixVar) {
+                kinds[i] = MATRIX_VAR;
+            } else if (part instanceof PathVar) {
+                kinds[i] = PATH_VAR;
+            } else {
+                kinds[i] = LITERAL;
+                length += values[i].length();
+            }
+        }
+        this.literalLength = length;
     }
 
     public final List<Object> getParsed() {
@@ -35,6 +62,21 @@ public class ParsedTemplate {
     public final String getTemplate() {
         return template;
     }
+
+    final byte[] getKinds() {
+        return kinds;
+    }
+
+    final String[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return the length of the literal parts of the template
+     */
+    final int getLiteralLength() {
+        return literalLength;
+    }
     
     public static ParsedTemplate create(String template) {
         List<Object> parsed = TemplateParser.parseTemplate(template);
@@ -31,19 +31,19 @@ public class TemplateParser {
         if (template == null) {
             return templateParts;
         }
-        StringBuilder val = new StringBuilder();
         String key;
-        for (char c : template.toCharArray()) {
-            switch (c) {
+        int start = 0;
+        for (int i = 0; i < template.length(); i++) {
+            switch (template.charAt(i)) {
                 case '{':
-                    key = val.toString();
-                    val = new StringBuilder();
+                    key = template.substring(start, i);
+                    start = i + 1;
                     templateParts.add(key);
                     break;
 
                 case '}':
-                    key = val.toString();
-                    val = new StringBuilder();
+                    key = template.substring(start, i);
+                    start = i + 1;
                     if (key.charAt(0) == ';') {
                         templateParts.add(new MatrixVar(key.substring(1)));
                     } else {
@@ -51,18 +51,52 @@ public class TemplateParser {
                     }
                     break;
                 default:
-                    val.append(c);
             }
         }
-        key = val.toString();
+        key = template.substring(start);
         if (!key.isEmpty()) {
             templateParts.add(key);
         }
         return templateParts;
     }
 
+    /**
+     * Expand the template with the given variables. The template is not parsed again, its precompiled
+     * parts are written into a builder sized for the literal parts plus some room for the values.
+     */
     public static String toData(Map<String, Object> variables, ParsedTemplate parsedTemplate) throws TemplateParsingException {
-        return toData(variables, parsedTemplate.getTemplate(), parsedTemplate.getParsed());
+        String template = parsedTemplate.getTemplate();
+        // skip expansion if there's no valid variables set. ex. {a} is the
+        // first valid
+        if (variables.isEmpty() && template.indexOf('{') == 0) {
+            return template;
+        }
+
+        byte[] kinds = parsedTemplate.getKinds();
+        String[] values = parsedTemplate.getValues();
+        StringBuilder builder = new StringBuilder(parsedTemplate.getLiteralLength() + 16 * values.length);
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case ParsedTemplate.LITERAL:
+                    builder.append(values[i]);
+                    break;
+                case ParsedTemplate.PATH_VAR: {
+                    Object var = variables.get(values[i]);
+                    if (var == null) {
+                        throw new TemplateParsingException(String.format("template variable %s was not supplied for template %s", values[i], template));
+                    }
+                    builder.append(var);
+                    break;
+                }
+                default: {
+                    Object var = variables.get(values[i]);
+                    if (var != null) {
+                        builder.append(';').append(values[i]).append('=').append(var);
+                    }
+                }
+            }
+        }
+        return builder.toString();
     }
     
     public static String toData(Map<String, Object> variables, String template, List<Object> parsedList) throws TemplateParsingException {
@@ -15,13 +15,19 @@
  */
 package com.netflix.ribbon;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.google.mockwebserver.Dispatcher;
 import com.google.mockwebserver.MockResponse;
 import com.google.mockwebserver.MockWebServer;
+import com.google.mockwebserver.RecordedRequest;
 import com.netflix.hystrix.HystrixInvokableInfo;
 import com.netflix.hystrix.exception.HystrixBadRequestException;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
 import com.netflix.hystrix.strategy.concurrency.HystrixRequestContext;
 import com.netflix.ribbon.http.HttpRequestTemplate;
 import com.netflix.ribbon.http.HttpResourceGroup;
+import com.netflix.ribbon.http.ResponseDecoder;
 import com.netflix.ribbon.hystrix.FallbackHandler;
 
 import io.netty.buffer.ByteBuf;
@@ -40,14 +46,20 @@ import rx.functions.Action1;
 import rx.functions.Func1;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -413,4 +425,155 @@ public class RibbonTest {
         String result = toStringBlocking(request);
         assertEquals(content, result);
     } 
+
+    @Test
+    public void testResponseDecoder() throws IOException {
+        MockWebServer server = new MockWebServer();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            content.append("chunk ").append(i).append('\n');
+        }
+        server.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-type", "text/plain")
+                .setChunkedBody(content.toString(), 1024));
+        server.play();
+
+        HttpResourceGroup group = Ribbon.createHttpResourceGroup("myclient", ClientOptions.create()
+                .withConfigurationBasedServerList("localhost:" + server.getPort()));
+        HttpRequestTemplate<String> template = group.newTemplateBuilder("testDecoder", String.class)
+                .withUriTemplate("/")
+                .withMethod("GET")
+                .withResponseDecoder(new ResponseDecoder<String>() {
+                    @Override
+                    public String decode(InputStream in) throws IOException {
+                        return CharStreams.toString(new InputStreamReader(in, Charsets.UTF_8));
+                    }
+                })
+                .build();
+        assertEquals(content.toString(), template.requestBuilder().build().execute());
+    }
+
+    @Test
+    public void testResponseDecoderError() throws IOException {
+        MockWebServer server = new MockWebServer();
+        server.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-type", "text/plain")
+                .setBody("not a number"));
+        server.play();
+
+        HttpResourceGroup group = Ribbon.createHttpResourceGroup("myclient", ClientOptions.create()
+                .withConfigurationBasedServerList("localhost:" + server.getPort()));
+        HttpRequestTemplate<Integer> template = group.newTemplateBuilder("testDecoderError", Integer.class)
+                .withUriTemplate("/")
+                .withMethod("GET")
+                .withResponseDecoder(new ResponseDecoder<Integer>() {
+                    @Override
+                    public Integer decode(InputStream in) throws IOException {
+                        return Integer.valueOf(CharStreams.toString(new InputStreamReader(in, Charsets.UTF_8)));
+                    }
+                })
+                .build();
+        try {
+            template.requestBuilder().build().execute();
+            fail("Exception expected");
+        } catch (HystrixRuntimeException e) {
+            assertTrue(e.getCause() instanceof NumberFormatException);
+        }
+    }
+
+    @Test
+    public void testRequestCoalescing() throws IOException {
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                Thread.sleep(500);
+                return new MockResponse()
+                        .setResponseCode(200)
+                        .setHeader("Content-type", "text/plain")
+                        .setBody("movie " + request.getPath());
+            }
+        });
+        server.play();
+
+        HttpResourceGroup group = Ribbon.createHttpResourceGroup("myclient", ClientOptions.create()
+                .withConfigurationBasedServerList("localhost:" + server.getPort()));
+        HttpRequestTemplate<String> template = group.newTemplateBuilder("testCoalescing", String.class)
+                .withUriTemplate("/movies/{id}")
+                .withMethod("GET")
+                .withRequestCoalescing("{id}", 3)
+                .withResponseDecoder(new ResponseDecoder<String>() {
+                    @Override
+                    public String decode(InputStream in) throws IOException {
+                        return CharStreams.toString(new InputStreamReader(in, Charsets.UTF_8));
+                    }
+                })
+                .build();
+        List<Observable<String>> requests = new ArrayList<Observable<String>>();
+        for (int i = 0; i < 4; i++) {
+            requests.add(template.requestBuilder().withRequestProperty("id", "1").build().observe());
+        }
+        requests.add(template.requestBuilder().withRequestProperty("id", "2").build().observe());
+        List<String> results = Observable.merge(requests).toList().toBlocking().single();
+
+        assertEquals(Arrays.asList("movie /movies/1", "movie /movies/1", "movie /movies/1", "movie /movies/1",
+                "movie /movies/2"), results.stream().sorted().collect(Collectors.toList()));
+        // three requests for the first movie share an execution, the fourth exceeds the maximum
+        assertEquals(3, server.getRequestCount());
+    }
+
+    @Test
+    public void testRequestCoalescingIsPerTemplate() throws IOException {
+        List<Observable<String>> requests = new ArrayList<Observable<String>>();
+        List<MockWebServer> servers = new ArrayList<MockWebServer>();
+        for (final String name : Arrays.asList("first", "second")) {
+            MockWebServer server = new MockWebServer();
+            server.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                    Thread.sleep(500);
+                    return new MockResponse()
+                            .setResponseCode(200)
+                            .setHeader("Content-type", "text/plain")
+                            .setBody(name + " " + request.getPath());
+                }
+            });
+            server.play();
+            servers.add(server);
+            // templates with the same name in two groups
+            HttpResourceGroup group = Ribbon.createHttpResourceGroup("coalescing-" + name, ClientOptions.create()
+                    .withConfigurationBasedServerList("localhost:" + server.getPort()));
+            HttpRequestTemplate<String> template = group.newTemplateBuilder("getMovie", String.class)
+                    .withUriTemplate("/movies/{id}")
+                    .withMethod("GET")
+                    .withRequestCoalescing("{id}", 10)
+                    .withResponseDecoder(new ResponseDecoder<String>() {
+                        @Override
+                        public String decode(InputStream in) throws IOException {
+                            return CharStreams.toString(new InputStreamReader(in, Charsets.UTF_8));
+                        }
+                    })
+                    .build();
+            requests.add(template.requestBuilder().withRequestProperty("id", "1").build().observe());
+        }
+        List<String> results = Observable.merge(requests).toList().toBlocking().single();
+
+        assertEquals(Arrays.asList("first /movies/1", "second /movies/1"),
+                results.stream().sorted().collect(Collectors.toList()));
+        for (MockWebServer server : servers) {
+            assertEquals(1, server.getRequestCount());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequestCoalescingRequiresDecoder() {
+        HttpResourceGroup group = Ribbon.createHttpResourceGroup("myclient");
+        group.newTemplateBuilder("testCoalescingByteBuf", ByteBuf.class)
+                .withUriTemplate("/movies/{id}")
+                .withMethod("GET")
+                .withRequestCoalescing("{id}", 10)
+                .build();
+    }
 }
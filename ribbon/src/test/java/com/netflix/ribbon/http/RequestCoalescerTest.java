@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.ribbon.http;
+
+import org.junit.Test;
+import rx.Observable;
+import rx.functions.Func0;
+import rx.observers.TestSubscriber;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestCoalescerTest {
+
+    @Test
+    public void testFailureToCreateRequestIsNotShared() {
+        Object key = RequestCoalescer.key(this, "1");
+        TestSubscriber<String> failed = new TestSubscriber<String>();
+        RequestCoalescer.coalesce(key, 10, new Func0<Observable<String>>() {
+            @Override
+            public Observable<String> call() {
+                throw new IllegalStateException("no command");
+            }
+        }).subscribe(failed);
+        failed.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        assertEquals(1, failed.getOnErrorEvents().size());
+        assertTrue(failed.getOnErrorEvents().get(0) instanceof IllegalStateException);
+
+        // the failed execution is forgotten, the next request executes again
+        TestSubscriber<String> next = new TestSubscriber<String>();
+        RequestCoalescer.coalesce(key, 10, new Func0<Observable<String>>() {
+            @Override
+            public Observable<String> call() {
+                return Observable.just("movie");
+            }
+        }).subscribe(next);
+        next.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        next.assertNoErrors();
+        next.assertReceivedOnNext(Arrays.asList("movie"));
+    }
+
+    @Test
+    public void testKeysOfOtherTemplatesDiffer() {
+        Object template = new Object();
+        assertEquals(RequestCoalescer.key(template, "1"), RequestCoalescer.key(template, "1"));
+        assertNotEquals(RequestCoalescer.key(template, "1"), RequestCoalescer.key(template, "2"));
+        assertNotEquals(RequestCoalescer.key(template, "1"), RequestCoalescer.key(new Object(), "1"));
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.netflix.ribbon.template;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class TemplateParserTest {
+
+    @Test
+    public void testPathAndMatrixVariables() throws Exception {
+        Map<String, Object> vars = Maps.newHashMap();
+        vars.put("id", 5);
+        vars.put("name", "netflix");
+        vars.put("color", "red");
+        ParsedTemplate template = ParsedTemplate.create("/abc/{id}{;color}{;size}?name={name}");
+        assertEquals("/abc/5;color=red?name=netflix", TemplateParser.toData(vars, template));
+        assertEquals(TemplateParser.toData(vars, template.getTemplate(), template.getParsed()),
+                TemplateParser.toData(vars, template));
+    }
+
+    @Test
+    public void testMissingPathVariable() {
+        ParsedTemplate template = ParsedTemplate.create("/abc/{id}/{name}");
+        try {
+            TemplateParser.toData(Collections.<String, Object>singletonMap("id", "5"), template);
+            fail("TemplateParsingException expected");
+        } catch (TemplateParsingException e) {
+            assertEquals("template variable name was not supplied for template /abc/{id}/{name}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLiteralOnly() throws Exception {
+        ParsedTemplate template = ParsedTemplate.create("/abc/def");
+        assertEquals("/abc/def", TemplateParser.toData(Collections.<String, Object>emptyMap(), template));
+        assertEquals(1, template.getParsed().size());
+    }
+}